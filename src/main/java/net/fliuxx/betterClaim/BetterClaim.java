@@ -3,7 +3,9 @@ package net.fliuxx.betterClaim;
 import net.fliuxx.betterClaim.commands.ClaimAdminCommand;
 import net.fliuxx.betterClaim.commands.ClaimCommand;
 import net.fliuxx.betterClaim.listeners.ClaimProtectionListener;
+import net.fliuxx.betterClaim.listeners.EnvironmentProtectionListener;
 import net.fliuxx.betterClaim.listeners.GUIListener;
+import net.fliuxx.betterClaim.listeners.PreSpawnListener;
 import net.fliuxx.betterClaim.managers.ClaimManager;
 import net.fliuxx.betterClaim.managers.ConfigManager;
 import net.fliuxx.betterClaim.managers.DatabaseManager;
@@ -19,6 +21,8 @@ public class BetterClaim extends JavaPlugin {
     private DatabaseManager databaseManager;
     private ClaimManager claimManager;
     private GUIManager guiManager;
+    private ClaimProtectionListener protectionListener;
+    private EnvironmentProtectionListener environmentListener;
     
     @Override
     public void onEnable() {
@@ -41,9 +45,22 @@ public class BetterClaim extends JavaPlugin {
     
     @Override
     public void onDisable() {
-        // Save all claims before shutdown
+        // Let queued writes finish, so the final save below is the only writer left
+        long journalMark = claimManager != null ? claimManager.getJournal().getMark() : 0L;
+        boolean drained = databaseManager != null && databaseManager.drainWrites();
+        
         if (claimManager != null) {
-            claimManager.saveAllClaims();
+            // Save all claims before shutdown
+            boolean saved = claimManager.saveAllClaims();
+            if (saved && drained) {
+                // Everything is in the database: snapshot it for a fast start, and drop the journal
+                // records it covers; otherwise the journal is replayed next start
+                if (claimManager.isLoaded() && !claimManager.isLazy()) {
+                    databaseManager.writeSnapshot(claimManager.getAllClaims());
+                }
+                claimManager.getJournal().compact(journalMark);
+            }
+            claimManager.getJournal().close();
         }
         
         // Close database connection
@@ -83,22 +100,60 @@ public class BetterClaim extends JavaPlugin {
     }
     
     private void registerListeners() {
-        getServer().getPluginManager().registerEvents(new ClaimProtectionListener(this), this);
+        protectionListener = new ClaimProtectionListener(this);
+        getServer().getPluginManager().registerEvents(protectionListener, this);
+        environmentListener = new EnvironmentProtectionListener(this);
+        getServer().getPluginManager().registerEvents(environmentListener, this);
+        if (isPreSpawnEventAvailable()) {
+            getServer().getPluginManager().registerEvents(new PreSpawnListener(environmentListener), this);
+        }
         getServer().getPluginManager().registerEvents(new GUIListener(this), this);
     }
     
+    /**
+     * Check for Paper's PreCreatureSpawnEvent, which rejects spawns before the entity exists
+     * @return true if the server provides it
+     */
+    private boolean isPreSpawnEventAvailable() {
+        try {
+            Class.forName("com.destroystokyo.paper.event.entity.PreCreatureSpawnEvent");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
     private void startAutoSaveTask() {
         int interval = configManager.getAutoSaveInterval() * 20 * 60; // Convert minutes to ticks
         
-        getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+        // Writes go through the database writer thread, the main thread only queues dirty claims
+        getServer().getScheduler().runTaskTimer(this, () -> {
             if (claimManager != null) {
-                claimManager.saveAllClaims();
+                claimManager.saveAllClaimsAsync();
             }
         }, interval, interval);
+        
+        // Write-behind flush of claims changed by commands and GUIs, compacting the journal after it.
+        // Runs on the main thread so the journal mark lines up with the queued writes
+        int flushInterval = Math.max(1, configManager.getWriteBehindDelay()) * 20; // Convert seconds to ticks
+        
+        getServer().getScheduler().runTaskTimer(this, () -> {
+            if (claimManager != null) {
+                claimManager.checkpoint();
+            }
+        }, flushInterval, flushInterval);
+        
+        // Lazy mode: drop claims nobody used recently
+        if (claimManager != null && claimManager.isLazy()) {
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> claimManager.evictIdleClaims(), 20L * 60, 20L * 60);
+        }
     }
     
     public void reloadConfigs() {
         configManager.loadConfigs();
+        if (protectionListener != null) {
+            protectionListener.reload();
+        }
         claimManager.reloadClaims();
     }
     
@@ -119,6 +174,14 @@ public class BetterClaim extends JavaPlugin {
         return claimManager;
     }
     
+    public ClaimProtectionListener getProtectionListener() {
+        return protectionListener;
+    }
+    
+    public EnvironmentProtectionListener getEnvironmentListener() {
+        return environmentListener;
+    }
+    
     public GUIManager getGuiManager() {
         return guiManager;
     }
@@ -1,11 +1,18 @@
 package net.fliuxx.betterClaim.commands;
 
 import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.listeners.EnvironmentProtectionListener;
+import net.fliuxx.betterClaim.listeners.MaterialFlagTable;
+import net.fliuxx.betterClaim.managers.ClaimCache;
+import net.fliuxx.betterClaim.managers.DatabaseManager;
 import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
 import net.fliuxx.betterClaim.models.ChunkLocation;
 import net.fliuxx.betterClaim.utils.MessageUtils;
+import net.fliuxx.betterClaim.utils.SerialWriteExecutor;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -61,6 +68,9 @@ public class ClaimAdminCommand implements CommandExecutor, TabCompleter {
             case "stats":
                 handleStats(sender);
                 break;
+            case "debug":
+                handleDebug(sender, args);
+                break;
             case "help":
             default:
                 sendHelp(sender);
@@ -259,6 +269,62 @@ public class ClaimAdminCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(MessageUtils.colorize("&7Total Chunks: &e" + totalChunks));
         sender.sendMessage(MessageUtils.colorize("&7Average Chunks per Claim: &e" + 
             (totalClaims > 0 ? String.format("%.2f", (double) totalChunks / totalClaims) : "0")));
+        sender.sendMessage(MessageUtils.colorize("&7Chunk Index Memory: &e" + 
+            String.format("%.2f KB", plugin.getClaimManager().getChunkIndexMemory() / 1024.0)));
+        
+        DatabaseManager database = plugin.getDatabaseManager();
+        SerialWriteExecutor writes = database.getWriteExecutor();
+        if (writes != null) {
+            sender.sendMessage(MessageUtils.colorize("&7Write Queue: &e" + writes.getQueueDepth() + "/" + writes.getCapacity() +
+                " &7(peak &e" + writes.getHighWaterMark() + "&7, done &e" + writes.getCompleted() + "&7)"));
+            sender.sendMessage(MessageUtils.colorize("&7Write Stalls: &e" + writes.getStalls() +
+                " &7(" + writes.getStallMillis() + "ms), Busy Retries: &e" + database.getBusyRetries()));
+        }
+        sender.sendMessage(MessageUtils.colorize("&7Pending Saves: &e" + database.getPendingSaveCount()));
+        
+        ClaimCache cache = plugin.getClaimManager().getClaimCache();
+        if (cache != null) {
+            sender.sendMessage(MessageUtils.colorize("&7Loaded Claims: &e" + cache.size() + "/" + cache.getMaxSize() +
+                " &7(hits &e" + cache.getHits() + "&7, misses &e" + cache.getMisses() + "&7, evicted &e" + cache.getEvictions() + "&7)"));
+        }
+        
+        EnvironmentProtectionListener environment = plugin.getEnvironmentListener();
+        sender.sendMessage(MessageUtils.colorize("&7Spawns Rejected: &e" + environment.getTotalSpawnRejections()));
+        for (long[] entry : environment.getTopSpawnRejections(5)) {
+            Claim claim = plugin.getClaimManager().getClaimById((int) entry[0]);
+            String name = claim != null ? claim.getName() + " &8(" + claim.getOwnerName() + ")" : "&8deleted";
+            sender.sendMessage(MessageUtils.colorize("&8- &e#" + entry[0] + " " + name + " &7x" + entry[1]));
+        }
+    }
+    
+    private void handleDebug(CommandSender sender, String[] args) {
+        MaterialFlagTable table = plugin.getProtectionListener().getInteractTable();
+        
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            table.resetHits();
+            plugin.getEnvironmentListener().resetSpawnRejections();
+            sender.sendMessage(MessageUtils.colorize(
+                plugin.getConfigManager().getPrefix() + 
+                "&aInteraction and spawn counters have been reset."
+            ));
+            return;
+        }
+        
+        sender.sendMessage(MessageUtils.colorize("&6&lBetterClaim Interaction Table:"));
+        sender.sendMessage(MessageUtils.colorize("&7Protected Materials: &e" + table.size()));
+        sender.sendMessage(MessageUtils.colorize("&7Most Interacted Blocks:"));
+        
+        List<Map.Entry<Material, Long>> topHits = table.getTopHits(10);
+        if (topHits.isEmpty()) {
+            sender.sendMessage(MessageUtils.colorize("&8- &7No interactions recorded yet"));
+        }
+        for (Map.Entry<Material, Long> entry : topHits) {
+            ClaimFlag flag = table.getFlag(entry.getKey());
+            sender.sendMessage(MessageUtils.colorize(
+                "&8- &e" + entry.getKey().name() + " &7x" + entry.getValue() + 
+                " &8(" + (flag != null ? "&a" + flag.getConfigKey() : "&cunprotected") + "&8)"
+            ));
+        }
     }
     
     private void sendHelp(CommandSender sender) {
@@ -275,7 +341,7 @@ public class ClaimAdminCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length == 1) {
-            return Arrays.asList("list", "delete", "info", "teleport", "gui", "reload", "stats", "help")
+            return Arrays.asList("list", "delete", "info", "teleport", "gui", "reload", "stats", "debug", "help")
                     .stream()
                     .filter(cmd -> cmd.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
@@ -4,9 +4,10 @@ import net.fliuxx.betterClaim.BetterClaim;
 import net.fliuxx.betterClaim.models.Claim;
 import net.fliuxx.betterClaim.models.ClaimFlag;
 import net.fliuxx.betterClaim.models.ClaimMember;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.utils.ClaimUtils;
 import net.fliuxx.betterClaim.utils.MessageUtils;
 import org.bukkit.Bukkit;
-import org.bukkit.Chunk;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -81,7 +82,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
     }
     
     private void handleCreate(Player player) {
-        Chunk chunk = player.getLocation().getChunk();
+        ChunkLocation chunk = ClaimUtils.locationToChunk(player.getLocation());
         
         if (!plugin.getClaimManager().canClaim(player, chunk)) {
             // Check specific reason
@@ -132,7 +133,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
     }
     
     private void handleExpand(Player player) {
-        Chunk currentChunk = player.getLocation().getChunk();
+        ChunkLocation currentChunk = ClaimUtils.locationToChunk(player.getLocation());
         
         // Check if current chunk is already claimed by someone else
         Claim existingClaim = plugin.getClaimManager().getClaim(currentChunk);
@@ -210,10 +211,10 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
         }
     }
     
-    private boolean isChunkAdjacentToClaim(Chunk chunk, Claim claim) {
+    private boolean isChunkAdjacentToClaim(ChunkLocation chunk, Claim claim) {
         int chunkX = chunk.getX();
         int chunkZ = chunk.getZ();
-        String world = chunk.getWorld().getName();
+        String world = chunk.getWorld();
         
         if (!claim.getWorld().equals(world)) {
             return false;
@@ -231,8 +232,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
     }
     
     private void handleDelete(Player player) {
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
@@ -264,8 +264,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
     }
     
     private void handleInfo(Player player) {
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
@@ -312,8 +311,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
@@ -360,8 +358,9 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
         }
         
         ClaimMember existingMember = claim.getMember(target.getUniqueId());
+        plugin.getClaimManager().trustPlayer(claim, target.getUniqueId(), target.getName(), trustLevel);
+        
         if (existingMember != null) {
-            existingMember.setTrustLevel(trustLevel);
             Map<String, String> placeholders = new HashMap<>();
             placeholders.put("player", target.getName());
             placeholders.put("trust_level", trustLevel);
@@ -370,8 +369,6 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
                 plugin.getConfigManager().getMessage("trust.trust-level-updated", placeholders)
             ));
         } else {
-            ClaimMember member = new ClaimMember(target.getUniqueId(), target.getName(), trustLevel);
-            claim.addMember(member);
             Map<String, String> placeholders = new HashMap<>();
             placeholders.put("player", target.getName());
             placeholders.put("trust_level", trustLevel);
@@ -380,8 +377,6 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
                 plugin.getConfigManager().getMessage("trust.added", placeholders)
             ));
         }
-        
-        plugin.getDatabaseManager().saveClaim(claim);
     }
     
     private void handleUntrust(Player player, String[] args) {
@@ -393,8 +388,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
@@ -433,15 +427,13 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        claim.removeMember(target.getUniqueId());
+        plugin.getClaimManager().untrustPlayer(claim, target.getUniqueId());
         Map<String, String> placeholders = new HashMap<>();
         placeholders.put("player", target.getName());
         player.sendMessage(MessageUtils.colorize(
             plugin.getConfigManager().getPrefix() + 
             plugin.getConfigManager().getMessage("trust.removed", placeholders)
         ));
-        
-        plugin.getDatabaseManager().saveClaim(claim);
     }
     
     private void handleFlag(Player player, String[] args) {
@@ -453,8 +445,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
@@ -494,7 +485,7 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        claim.setFlag(flag, value);
+        plugin.getClaimManager().setFlag(claim, flag, value);
         Map<String, String> placeholders = new HashMap<>();
         placeholders.put("flag", flag.getDisplayName());
         placeholders.put("value", String.valueOf(value));
@@ -502,13 +493,10 @@ public class ClaimCommand implements CommandExecutor, TabCompleter {
             plugin.getConfigManager().getPrefix() + 
             plugin.getConfigManager().getMessage("flag.updated", placeholders)
         ));
-        
-        plugin.getDatabaseManager().saveClaim(claim);
     }
     
     private void handleGUI(Player player) {
-        Chunk chunk = player.getLocation().getChunk();
-        Claim claim = plugin.getClaimManager().getClaim(chunk);
+        Claim claim = plugin.getClaimManager().getClaimAt(player.getLocation());
         
         if (claim == null) {
             player.sendMessage(MessageUtils.colorize(
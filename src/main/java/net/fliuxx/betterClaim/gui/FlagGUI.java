@@ -45,10 +45,11 @@ public class FlagGUI implements Listener {
     
     private void setupFlagItems(Inventory inventory) {
         ClaimFlag[] flags = ClaimFlag.values();
+        long flagMask = claim.getFlagMask();
         
         for (int i = 0; i < flags.length && i < 45; i++) {
             ClaimFlag flag = flags[i];
-            ItemStack flagItem = createFlagItem(flag);
+            ItemStack flagItem = createFlagItem(flag, (flagMask & flag.getMask()) != 0);
             inventory.setItem(i, flagItem);
         }
         
@@ -73,9 +74,7 @@ public class FlagGUI implements Listener {
         }
     }
     
-    private ItemStack createFlagItem(ClaimFlag flag) {
-        boolean currentValue = claim.getFlag(flag);
-        
+    private ItemStack createFlagItem(ClaimFlag flag, boolean currentValue) {
         // Choose material based on flag type and current value
         Material material = getFlagMaterial(flag, currentValue);
         
@@ -193,13 +192,11 @@ public class FlagGUI implements Listener {
             boolean currentValue = claim.getFlag(flag);
             boolean newValue = !currentValue;
             
-            claim.setFlag(flag, newValue);
-            
-            // Save claim to database
-            plugin.getDatabaseManager().saveClaim(claim);
+            // Update and save the claim
+            plugin.getClaimManager().setFlag(claim, flag, newValue);
             
             // Update the GUI
-            ItemStack newItem = createFlagItem(flag);
+            ItemStack newItem = createFlagItem(flag, newValue);
             event.getInventory().setItem(slot, newItem);
             
             // Send confirmation message
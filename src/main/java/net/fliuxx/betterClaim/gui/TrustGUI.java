@@ -253,8 +253,7 @@ public class TrustGUI implements Listener {
             if (member != null) {
                 if (event.isRightClick()) {
                     // Remove member
-                    claim.removeMember(member.getPlayerUUID());
-                    plugin.getDatabaseManager().saveClaim(claim);
+                    plugin.getClaimManager().untrustPlayer(claim, member.getPlayerUUID());
                     
                     Map<String, String> placeholders = new HashMap<>();
                     placeholders.put("player", member.getPlayerName());
@@ -268,8 +267,7 @@ public class TrustGUI implements Listener {
                 } else {
                     // Cycle trust level
                     String newTrustLevel = getNextTrustLevel(member.getTrustLevel());
-                    member.setTrustLevel(newTrustLevel);
-                    plugin.getDatabaseManager().saveClaim(claim);
+                    plugin.getClaimManager().trustPlayer(claim, member.getPlayerUUID(), member.getPlayerName(), newTrustLevel);
                     
                     Map<String, String> placeholders = new HashMap<>();
                     placeholders.put("player", member.getPlayerName());
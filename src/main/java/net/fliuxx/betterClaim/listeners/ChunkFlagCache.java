@@ -0,0 +1,98 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.managers.ClaimIndex;
+import net.fliuxx.betterClaim.managers.ClaimManager;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.utils.LongIntHashMap;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short-lived cache of which chunks deny one flag, for events that fire many times per chunk.
+ * Unclaimed chunks are cached as well, so storms in the wilderness stay cheap too.
+ *
+ * Any claim change (creation, expansion, unclaim, deletion, flag change, reload) publishes a
+ * new {@link ClaimIndex}, which drops the whole cache. It is also dropped after a fixed time so
+ * it never holds on to unloaded worlds for long.
+ *
+ * In lazy mode a claim that is not in memory yet is reported as {@link #UNKNOWN} and starts
+ * loading in the background; that verdict is not cached, so the chunk is checked again next time.
+ *
+ * Not thread-safe; only used from the main thread.
+ */
+public class ChunkFlagCache {
+
+    /**
+     * Returned while claims, or in lazy mode the claim at the chunk, are not loaded yet;
+     * the chunk is treated as denying
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final int ALLOWED = Integer.MIN_VALUE; // Stored for chunks that do not deny the flag
+
+    private final ClaimManager claimManager;
+    private final ClaimFlag flag;
+    private final long ttlMillis;
+
+    private final Map<World, LongIntHashMap> chunks;
+    private ClaimIndex cachedIndex;
+    private long expiresAt;
+
+    public ChunkFlagCache(ClaimManager claimManager, ClaimFlag flag, long ttlMillis) {
+        this.claimManager = claimManager;
+        this.flag = flag;
+        this.ttlMillis = ttlMillis;
+        this.chunks = new HashMap<>();
+    }
+
+    /**
+     * Get the claim that denies the flag at a chunk
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return ID of the denying claim, 0 if the flag is allowed there, or {@link #UNKNOWN}
+     */
+    public int getDenyingClaim(World world, int chunkX, int chunkZ) {
+        if (!claimManager.isLoaded()) {
+            return UNKNOWN;
+        }
+
+        ClaimIndex index = claimManager.getIndex();
+        long now = System.currentTimeMillis();
+        if (index != cachedIndex || now >= expiresAt) {
+            chunks.clear();
+            cachedIndex = index;
+            expiresAt = now + ttlMillis;
+        }
+
+        LongIntHashMap worldChunks = chunks.computeIfAbsent(world, w -> new LongIntHashMap());
+        long key = ChunkLocation.pack(chunkX, chunkZ);
+
+        int verdict = worldChunks.get(key);
+        if (verdict == 0) {
+            int claimId = claimManager.getClaimIdAtChunk(world, chunkX, chunkZ);
+            Claim claim = claimId != 0 ? claimManager.getClaimIfReady(claimId) : null;
+            if (claimId != 0 && claim == null) {
+                return UNKNOWN; // Lazy mode, still loading
+            }
+            verdict = claim != null && !claim.getFlag(flag) ? claimId : ALLOWED;
+            worldChunks.put(key, verdict);
+        }
+        return verdict != ALLOWED ? verdict : 0;
+    }
+
+    /**
+     * Check if the flag is denied at a block
+     * @param world The world
+     * @param blockX Block X coordinate
+     * @param blockZ Block Z coordinate
+     * @return true if the block is in a claim that denies the flag, or claims are not loaded yet
+     */
+    public boolean isDenied(World world, int blockX, int blockZ) {
+        return getDenyingClaim(world, blockX >> 4, blockZ >> 4) != 0;
+    }
+}
@@ -1,10 +1,15 @@
 package net.fliuxx.betterClaim.listeners;
 
 import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.managers.ClaimManager;
 import net.fliuxx.betterClaim.models.Claim;
 import net.fliuxx.betterClaim.models.ClaimFlag;
-import net.fliuxx.betterClaim.utils.MessageUtils;
-import org.bukkit.Material;
+import net.fliuxx.betterClaim.models.PlayerSession;
+import net.fliuxx.betterClaim.utils.MessageCatalog;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Animals;
 import org.bukkit.entity.Entity;
@@ -19,58 +24,64 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityPickupItemEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public class ClaimProtectionListener implements Listener {
     
     private final BetterClaim plugin;
-    private final Set<UUID> lastClaimNotified;
     
-    // Interactive blocks that should be protected
-    private final Set<Material> CONTAINER_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.CHEST, Material.TRAPPED_CHEST, Material.BARREL, Material.SHULKER_BOX,
-        Material.FURNACE, Material.BLAST_FURNACE, Material.SMOKER, Material.BREWING_STAND,
-        Material.DISPENSER, Material.DROPPER, Material.HOPPER
-    ));
+    // Reused for entity positions; protection events are only fired on the main thread
+    private final Location scratchLocation = new Location(null, 0, 0, 0);
     
-    private final Set<Material> DOOR_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.OAK_DOOR, Material.BIRCH_DOOR, Material.SPRUCE_DOOR, Material.JUNGLE_DOOR,
-        Material.ACACIA_DOOR, Material.DARK_OAK_DOOR, Material.CRIMSON_DOOR, Material.WARPED_DOOR,
-        Material.IRON_DOOR, Material.OAK_TRAPDOOR, Material.BIRCH_TRAPDOOR, Material.SPRUCE_TRAPDOOR,
-        Material.JUNGLE_TRAPDOOR, Material.ACACIA_TRAPDOOR, Material.DARK_OAK_TRAPDOOR,
-        Material.CRIMSON_TRAPDOOR, Material.WARPED_TRAPDOOR, Material.IRON_TRAPDOOR
-    ));
+    // Minimum time between two claim enter messages
+    private static final long ENTER_NOTIFICATION_COOLDOWN = 3000L;
     
-    private final Set<Material> BUTTON_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.STONE_BUTTON, Material.OAK_BUTTON, Material.BIRCH_BUTTON, Material.SPRUCE_BUTTON,
-        Material.JUNGLE_BUTTON, Material.ACACIA_BUTTON, Material.DARK_OAK_BUTTON,
-        Material.CRIMSON_BUTTON, Material.WARPED_BUTTON, Material.POLISHED_BLACKSTONE_BUTTON
-    ));
+    // Minimum time between two "(xN)" action bar updates for the same denial
+    private static final long DENIAL_SUMMARY_INTERVAL = 500L;
     
-    private final Set<Material> LEVER_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.LEVER
-    ));
+    // Message path of the denial for each flag, indexed by ordinal
+    private static final String[] DENIAL_PATHS = new String[ClaimFlag.values().length];
+    private static final String LOADING_PATH = "protection.loading";
     
-    private final Set<Material> PRESSURE_PLATE_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.STONE_PRESSURE_PLATE, Material.OAK_PRESSURE_PLATE, Material.BIRCH_PRESSURE_PLATE,
-        Material.SPRUCE_PRESSURE_PLATE, Material.JUNGLE_PRESSURE_PLATE, Material.ACACIA_PRESSURE_PLATE,
-        Material.DARK_OAK_PRESSURE_PLATE, Material.CRIMSON_PRESSURE_PLATE, Material.WARPED_PRESSURE_PLATE,
-        Material.LIGHT_WEIGHTED_PRESSURE_PLATE, Material.HEAVY_WEIGHTED_PRESSURE_PLATE,
-        Material.POLISHED_BLACKSTONE_PRESSURE_PLATE
-    ));
+    static {
+        for (ClaimFlag flag : ClaimFlag.values()) {
+            DENIAL_PATHS[flag.ordinal()] = "protection." + flag.getConfigKey();
+        }
+    }
+    
+    // Per-player state, only touched on the main thread
+    private final Map<UUID, PlayerSession> sessions;
+    
+    // Material -> guarding flag for block interaction, rebuilt on config reload
+    private volatile MaterialFlagTable interactTable;
     
-    private final Set<Material> REDSTONE_BLOCKS = new HashSet<>(Arrays.asList(
-        Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR, Material.REDSTONE_TORCH,
-        Material.REDSTONE_WALL_TORCH, Material.REDSTONE_BLOCK, Material.TARGET
-    ));
+    // Denial throttling settings, cached from the config on reload
+    private volatile long denialWindow;
+    private volatile boolean denialSummary;
+    private volatile boolean showBorders;
     
     public ClaimProtectionListener(BetterClaim plugin) {
         this.plugin = plugin;
-        this.lastClaimNotified = new HashSet<>();
+        this.sessions = new HashMap<>();
+        reload();
+    }
+    
+    /**
+     * Rebuild the interaction classification table and re-read cached settings from the config
+     */
+    public void reload() {
+        this.interactTable = MaterialFlagTable.build(plugin.getConfigManager().getInteractOverrides(), plugin.getLogger());
+        this.denialWindow = plugin.getConfigManager().getDenialMessageWindow();
+        this.denialSummary = plugin.getConfigManager().isDenialActionBarSummary();
+        this.showBorders = plugin.getConfigManager().isShowBorders();
+    }
+    
+    public MaterialFlagTable getInteractTable() {
+        return interactTable;
     }
     
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -78,12 +89,9 @@ public class ClaimProtectionListener implements Listener {
         Player player = event.getPlayer();
         Block block = event.getBlock();
         
-        if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.BLOCK_BREAK)) {
+        if (!plugin.getClaimManager().hasPermission(player, block.getWorld(), block.getX(), block.getZ(), ClaimFlag.BLOCK_BREAK)) {
             event.setCancelled(true);
-            player.sendMessage(MessageUtils.colorize(
-                plugin.getConfigManager().getPrefix() + 
-                plugin.getConfigManager().getMessage("protection.block-break")
-            ));
+            sendDenial(player, ClaimFlag.BLOCK_BREAK, block.getWorld(), block.getX(), block.getZ());
         }
     }
     
@@ -92,12 +100,9 @@ public class ClaimProtectionListener implements Listener {
         Player player = event.getPlayer();
         Block block = event.getBlock();
         
-        if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.BLOCK_PLACE)) {
+        if (!plugin.getClaimManager().hasPermission(player, block.getWorld(), block.getX(), block.getZ(), ClaimFlag.BLOCK_PLACE)) {
             event.setCancelled(true);
-            player.sendMessage(MessageUtils.colorize(
-                plugin.getConfigManager().getPrefix() + 
-                plugin.getConfigManager().getMessage("protection.block-place")
-            ));
+            sendDenial(player, ClaimFlag.BLOCK_PLACE, block.getWorld(), block.getX(), block.getZ());
         }
     }
     
@@ -107,78 +112,14 @@ public class ClaimProtectionListener implements Listener {
         
         Player player = event.getPlayer();
         Block block = event.getClickedBlock();
-        Material material = block.getType();
-        
-        // Check container access
-        if (CONTAINER_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.CONTAINER_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.container-access")
-                ));
-                return;
-            }
-        }
-        
-        // Check door access
-        if (DOOR_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.DOOR_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.door-access")
-                ));
-                return;
-            }
-        }
-        
-        // Check button access
-        if (BUTTON_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.BUTTON_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.button-access")
-                ));
-                return;
-            }
-        }
-        
-        // Check lever access
-        if (LEVER_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.LEVER_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.lever-access")
-                ));
-                return;
-            }
-        }
-        
-        // Check pressure plate access
-        if (PRESSURE_PLATE_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.PRESSURE_PLATE_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.pressure-plate-access")
-                ));
-                return;
-            }
+        ClaimFlag flag = interactTable.classify(block.getType());
+        if (flag == null) {
+            return; // Not a protected interaction
         }
         
-        // Check redstone access
-        if (REDSTONE_BLOCKS.contains(material)) {
-            if (!plugin.getClaimManager().hasPermission(player, block.getChunk(), ClaimFlag.REDSTONE_ACCESS)) {
-                event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.redstone-access")
-                ));
-                return;
-            }
+        if (!plugin.getClaimManager().hasPermission(player, block.getWorld(), block.getX(), block.getZ(), flag)) {
+            event.setCancelled(true);
+            sendDenial(player, flag, block.getWorld(), block.getX(), block.getZ());
         }
     }
     
@@ -190,26 +131,28 @@ public class ClaimProtectionListener implements Listener {
         Entity entity = event.getEntity();
         
         // Check PvP
+        Location location = entity.getLocation(scratchLocation);
+        
         if (entity instanceof Player) {
-            Claim claim = plugin.getClaimManager().getClaim(entity.getLocation().getChunk());
-            if (claim != null && !claim.getFlag(ClaimFlag.PVP)) {
+            ClaimManager claimManager = plugin.getClaimManager();
+            World world = location.getWorld();
+            int claimId = claimManager.getClaimIdAtChunk(world, location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            Claim claim = claimId != 0 ? claimManager.getClaimIfReady(claimId) : null;
+            boolean blocked = claimManager.isLoaded() && (claimId == 0 || claim != null)
+                    ? claim != null && !claim.getFlag(ClaimFlag.PVP)
+                    : !player.hasPermission("betterclaim.bypass"); // Unknown until the claim is loaded
+            if (blocked) {
                 event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.pvp")
-                ));
+                sendDenial(player, ClaimFlag.PVP, world, location.getBlockX(), location.getBlockZ());
                 return;
             }
         }
         
         // Check animal damage
         if (entity instanceof Animals) {
-            if (!plugin.getClaimManager().hasPermission(player, entity.getLocation().getChunk(), ClaimFlag.ANIMAL_DAMAGE)) {
+            if (!plugin.getClaimManager().hasPermission(player, location.getWorld(), location.getBlockX(), location.getBlockZ(), ClaimFlag.ANIMAL_DAMAGE)) {
                 event.setCancelled(true);
-                player.sendMessage(MessageUtils.colorize(
-                    plugin.getConfigManager().getPrefix() + 
-                    plugin.getConfigManager().getMessage("protection.animal-damage")
-                ));
+                sendDenial(player, ClaimFlag.ANIMAL_DAMAGE, location.getWorld(), location.getBlockX(), location.getBlockZ());
                 return;
             }
         }
@@ -221,47 +164,70 @@ public class ClaimProtectionListener implements Listener {
         
         Player player = (Player) event.getEntity();
         Item item = event.getItem();
+        Location location = item.getLocation(scratchLocation);
         
-        if (!plugin.getClaimManager().hasPermission(player, item.getLocation().getChunk(), ClaimFlag.ITEM_PICKUP)) {
+        if (!plugin.getClaimManager().hasPermission(player, location.getWorld(), location.getBlockX(), location.getBlockZ(), ClaimFlag.ITEM_PICKUP)) {
             event.setCancelled(true);
-            player.sendMessage(MessageUtils.colorize(
-                plugin.getConfigManager().getPrefix() + 
-                plugin.getConfigManager().getMessage("protection.item-pickup")
-            ));
+            sendDenial(player, ClaimFlag.ITEM_PICKUP, location.getWorld(), location.getBlockX(), location.getBlockZ());
         }
     }
     
     @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerUUID = event.getPlayer().getUniqueId();
+        sessions.remove(playerUUID);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
-        if (event.getFrom().getChunk().equals(event.getTo().getChunk())) {
+        if (!showBorders) {
+            return; // Border notifications disabled
+        }
+        
+        Location to = event.getTo();
+        World world = to.getWorld();
+        int chunkX = to.getBlockX() >> 4;
+        int chunkZ = to.getBlockZ() >> 4;
+        
+        Player player = event.getPlayer();
+        PlayerSession session = getSession(player);
+        if (session.isInChunk(world, chunkX, chunkZ)) {
             return; // Same chunk, no need to check
         }
         
-        if (!plugin.getConfigManager().isShowBorders()) {
-            return; // Border notifications disabled
+        // The claim the player was in is remembered, only the new chunk needs a lookup
+        ClaimManager claimManager = plugin.getClaimManager();
+        int fromClaimId;
+        if (session.hasPosition()) {
+            fromClaimId = session.getCurrentClaimId();
+        } else {
+            Location from = event.getFrom();
+            fromClaimId = claimManager.getClaimIdAtChunk(from.getWorld(), from.getBlockX() >> 4, from.getBlockZ() >> 4);
         }
         
-        Player player = event.getPlayer();
-        Claim fromClaim = plugin.getClaimManager().getClaim(event.getFrom().getChunk());
-        Claim toClaim = plugin.getClaimManager().getClaim(event.getTo().getChunk());
+        int toClaimId = claimManager.getClaimIdAtChunk(world, chunkX, chunkZ);
+        session.moveTo(world, chunkX, chunkZ, toClaimId);
         
-        // Entering a claim
-        if (fromClaim == null && toClaim != null) {
-            showClaimEnterMessage(player, toClaim);
+        if (fromClaimId == toClaimId) {
+            return; // Still in the same claim, or still in the wilderness
         }
-        // Leaving a claim
-        else if (fromClaim != null && toClaim == null) {
+        
+        // Leaving a claim (it may have been deleted meanwhile, or be loading in lazy mode)
+        Claim fromClaim = fromClaimId != 0 ? claimManager.getClaimIfReady(fromClaimId) : null;
+        if (fromClaim != null) {
             showClaimLeaveMessage(player, fromClaim);
         }
-        // Moving between different claims
-        else if (fromClaim != null && toClaim != null && !fromClaim.equals(toClaim)) {
-            showClaimLeaveMessage(player, fromClaim);
-            showClaimEnterMessage(player, toClaim);
+        
+        // Entering a claim; in lazy mode the first visit only starts loading it
+        Claim toClaim = toClaimId != 0 ? claimManager.getClaimIfReady(toClaimId) : null;
+        if (toClaim != null) {
+            showClaimEnterMessage(player, session, toClaim);
         }
     }
     
-    private void showClaimEnterMessage(Player player, Claim claim) {
-        if (lastClaimNotified.contains(player.getUniqueId())) {
+    private void showClaimEnterMessage(Player player, PlayerSession session, Claim claim) {
+        long now = System.currentTimeMillis();
+        if (!session.tryEnterNotification(now, ENTER_NOTIFICATION_COOLDOWN)) {
             return; // Already notified recently
         }
         
@@ -269,26 +235,48 @@ public class ClaimProtectionListener implements Listener {
         placeholders.put("claim", claim.getName());
         placeholders.put("player", claim.getOwnerName());
         
-        player.sendMessage(MessageUtils.colorize(
-            plugin.getConfigManager().getPrefix() + 
-            plugin.getConfigManager().getMessage("claim.enter", placeholders)
-        ));
-        
-        lastClaimNotified.add(player.getUniqueId());
-        
-        // Remove from set after 3 seconds
-        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-            lastClaimNotified.remove(player.getUniqueId());
-        }, 60L);
+        player.sendMessage(plugin.getConfigManager().getMessageCatalog().getPrefixed("claim.enter").format(placeholders));
     }
     
     private void showClaimLeaveMessage(Player player, Claim claim) {
         java.util.Map<String, String> placeholders = new java.util.HashMap<>();
         placeholders.put("claim", claim.getName());
         
-        player.sendMessage(MessageUtils.colorize(
-            plugin.getConfigManager().getPrefix() + 
-            plugin.getConfigManager().getMessage("claim.leave", placeholders)
-        ));
+        player.sendMessage(plugin.getConfigManager().getMessageCatalog().getPrefixed("claim.leave").format(placeholders));
+    }
+    
+    /**
+     * Tell a player an action was blocked.
+     * Repeats of the same denial within the configured window are not sent to chat; they are
+     * counted and optionally shown as a "(xN)" action bar summary instead.
+     * @param player The player
+     * @param flag The flag that blocked the action
+     * @param world World of the blocked action
+     * @param blockX Block X coordinate of the blocked action
+     * @param blockZ Block Z coordinate of the blocked action
+     */
+    private void sendDenial(Player player, ClaimFlag flag, World world, int blockX, int blockZ) {
+        String path = plugin.getClaimManager().isReadyAt(world, blockX, blockZ) ? DENIAL_PATHS[flag.ordinal()] : LOADING_PATH;
+        MessageCatalog catalog = plugin.getConfigManager().getMessageCatalog();
+        
+        if (denialWindow <= 0) {
+            player.sendMessage(catalog.getPrefixed(path).toComponent());
+            return; // Throttling disabled
+        }
+        
+        PlayerSession session = getSession(player);
+        long now = System.currentTimeMillis();
+        
+        if (session.recordDenial(flag, now, denialWindow)) {
+            player.sendMessage(catalog.getPrefixed(path).toComponent());
+        } else if (denialSummary && session.shouldSendSummary(flag, now, DENIAL_SUMMARY_INTERVAL)) {
+            // Repeats are collapsed into a single action bar line with a counter
+            String summary = catalog.get(path).format() + ChatColor.GRAY + " (x" + (session.getSuppressedDenials(flag) + 1) + ")";
+            player.sendActionBar(LegacyComponentSerializer.legacySection().deserialize(summary));
+        }
+    }
+    
+    private PlayerSession getSession(Player player) {
+        return sessions.computeIfAbsent(player.getUniqueId(), PlayerSession::new);
     }
 }
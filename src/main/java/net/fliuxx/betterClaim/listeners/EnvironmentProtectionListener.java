@@ -0,0 +1,429 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.managers.ClaimManager;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.utils.IntObjectHashMap;
+import net.fliuxx.betterClaim.utils.LongIntHashMap;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Protects claims from changes that no player directly causes, such as fluids flowing in
+ * from outside, explosions, fire, natural mob spawns, pistons or griefing mobs.
+ *
+ * Handlers here fire far more often than player events, so they reject the common case
+ * (both ends in the same chunk) with coordinate math alone and otherwise compare claim IDs
+ * straight from the index, only resolving a claim to read its flags.
+ */
+public class EnvironmentProtectionListener implements Listener {
+    
+    private final BetterClaim plugin;
+    
+    // Per-chunk verdicts of the explosion being filtered, reused; events fire on the main thread
+    private final LongIntHashMap explosionChunks;
+    private static final int CHUNK_UNPROTECTED = 1;
+    private static final int CHUNK_PROTECTED = 2;
+    
+    // Per-chunk verdicts for the flags checked by event storms
+    private static final long CHUNK_CACHE_TTL = 5000L;
+    private final ChunkFlagCache fireCache;
+    private final ChunkFlagCache spawnCache;
+    
+    // Spawn reasons MOB_SPAWNING applies to; spawners, eggs, breeding and plugins are left alone
+    private static final Set<CreatureSpawnEvent.SpawnReason> BLOCKED_SPAWN_REASONS = EnumSet.of(
+        CreatureSpawnEvent.SpawnReason.NATURAL,
+        CreatureSpawnEvent.SpawnReason.CHUNK_GEN,
+        CreatureSpawnEvent.SpawnReason.JOCKEY,
+        CreatureSpawnEvent.SpawnReason.MOUNT,
+        CreatureSpawnEvent.SpawnReason.REINFORCEMENTS,
+        CreatureSpawnEvent.SpawnReason.PATROL,
+        CreatureSpawnEvent.SpawnReason.RAID,
+        CreatureSpawnEvent.SpawnReason.VILLAGE_INVASION
+    );
+    
+    // Claim ID (or NO_CLAIM) per chunk touched by the piston move being checked, reused
+    private final LongIntHashMap pistonChunks;
+    private boolean pistonChunksUsed;
+    private static final int NO_CLAIM = -1;
+    
+    // Mobs whose block changes are blocked in claims
+    private static final Set<EntityType> GRIEFING_ENTITIES = EnumSet.of(
+        EntityType.ENDERMAN,
+        EntityType.WITHER,
+        EntityType.RAVAGER,
+        EntityType.SILVERFISH,
+        EntityType.ZOMBIE,
+        EntityType.ZOMBIE_VILLAGER,
+        EntityType.HUSK,
+        EntityType.VINDICATOR
+    );
+    
+    // Rejected spawns per claim as {claimId, count}, for tuning; main thread only
+    private final IntObjectHashMap<long[]> spawnRejections;
+    private long totalSpawnRejections;
+    
+    public EnvironmentProtectionListener(BetterClaim plugin) {
+        this.plugin = plugin;
+        this.explosionChunks = new LongIntHashMap();
+        this.fireCache = new ChunkFlagCache(plugin.getClaimManager(), ClaimFlag.FIRE_SPREAD, CHUNK_CACHE_TTL);
+        this.spawnCache = new ChunkFlagCache(plugin.getClaimManager(), ClaimFlag.MOB_SPAWNING, CHUNK_CACHE_TTL);
+        this.spawnRejections = new IntObjectHashMap<>();
+        this.pistonChunks = new LongIntHashMap();
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        Block from = event.getBlock();
+        Block to = event.getToBlock();
+        int fromChunkX = from.getX() >> 4;
+        int fromChunkZ = from.getZ() >> 4;
+        int toChunkX = to.getX() >> 4;
+        int toChunkZ = to.getZ() >> 4;
+        if (fromChunkX == toChunkX && fromChunkZ == toChunkZ) {
+            return; // Same chunk, so the same claim or none
+        }
+        
+        Material type = from.getType();
+        if (type == Material.DRAGON_EGG) {
+            return; // Egg teleport, not a flow
+        }
+        ClaimFlag flag = type == Material.LAVA ? ClaimFlag.LAVA_FLOW : ClaimFlag.WATER_FLOW;
+        
+        if (!canEnter(from.getWorld(), fromChunkX, fromChunkZ, toChunkX, toChunkZ, flag)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockDispense(BlockDispenseEvent event) {
+        ClaimFlag flag = getBucketFlag(event.getItem().getType());
+        if (flag == null) {
+            return; // Not emptying a bucket
+        }
+        
+        Block dispenser = event.getBlock();
+        BlockData data = dispenser.getBlockData();
+        if (!(data instanceof Directional)) {
+            return;
+        }
+        Block target = dispenser.getRelative(((Directional) data).getFacing());
+        
+        int fromChunkX = dispenser.getX() >> 4;
+        int fromChunkZ = dispenser.getZ() >> 4;
+        int toChunkX = target.getX() >> 4;
+        int toChunkZ = target.getZ() >> 4;
+        if (fromChunkX == toChunkX && fromChunkZ == toChunkZ) {
+            return;
+        }
+        
+        if (!canEnter(dispenser.getWorld(), fromChunkX, fromChunkZ, toChunkX, toChunkZ, flag)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        filterExplosion(event.getEntity().getWorld(), event.blockList());
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        filterExplosion(event.getBlock().getWorld(), event.blockList());
+    }
+    
+    /**
+     * Remove the blocks of claims that do not allow explosions from an explosion's block list.
+     * Each distinct chunk is looked up once and the list is compacted in a single pass.
+     * @param world The world of the explosion
+     * @param blocks The blocks the explosion would destroy, modified in place
+     */
+    private void filterExplosion(World world, List<Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        
+        ClaimManager claimManager = plugin.getClaimManager();
+        if (!claimManager.isLoaded()) {
+            blocks.clear(); // Claims unknown yet, destroy nothing
+            return;
+        }
+        
+        explosionChunks.clear();
+        blocks.removeIf(block -> {
+            int chunkX = block.getX() >> 4;
+            int chunkZ = block.getZ() >> 4;
+            long key = ChunkLocation.pack(chunkX, chunkZ);
+            
+            int verdict = explosionChunks.get(key);
+            if (verdict == 0) {
+                int claimId = claimManager.getClaimIdAtChunk(world, chunkX, chunkZ);
+                Claim claim = claimId != 0 ? claimManager.getClaimIfReady(claimId) : null;
+                boolean loading = claimId != 0 && claim == null; // Lazy mode, protect it until it is loaded
+                verdict = loading || claim != null && !claim.getFlag(ClaimFlag.EXPLOSIONS) ? CHUNK_PROTECTED : CHUNK_UNPROTECTED;
+                explosionChunks.put(key, verdict);
+            }
+            return verdict == CHUNK_PROTECTED;
+        });
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        Material type = event.getSource().getType();
+        if (type != Material.FIRE && type != Material.SOUL_FIRE) {
+            return; // Grass, vines, sculk and the like
+        }
+        
+        Block block = event.getBlock();
+        if (fireCache.isDenied(block.getWorld(), block.getX(), block.getZ())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        Block block = event.getBlock();
+        if (fireCache.isDenied(block.getWorld(), block.getX(), block.getZ())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        if (event.getPlayer() != null) {
+            return; // Lit by a player on purpose
+        }
+        
+        Block block = event.getBlock();
+        if (fireCache.isDenied(block.getWorld(), block.getX(), block.getZ())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onCreatureSpawn(CreatureSpawnEvent event) {
+        if (isSpawnBlocked(event.getLocation(), event.getSpawnReason())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    /**
+     * Check if a spawn must be rejected because of MOB_SPAWNING, counting it if so
+     * @param location Where the mob would spawn
+     * @param reason Why it spawns
+     * @return true if the spawn is in a claim that does not allow mob spawning
+     */
+    public boolean isSpawnBlocked(Location location, CreatureSpawnEvent.SpawnReason reason) {
+        if (!BLOCKED_SPAWN_REASONS.contains(reason)) {
+            return false;
+        }
+        
+        int claimId = spawnCache.getDenyingClaim(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        if (claimId == 0) {
+            return false;
+        }
+        
+        if (claimId != ChunkFlagCache.UNKNOWN) {
+            long[] counter = spawnRejections.get(claimId);
+            if (counter == null) {
+                counter = new long[] {claimId, 0L};
+                spawnRejections.put(claimId, counter);
+            }
+            counter[1]++;
+        }
+        totalSpawnRejections++;
+        return true;
+    }
+    
+    public long getTotalSpawnRejections() {
+        return totalSpawnRejections;
+    }
+    
+    /**
+     * Get the claims that rejected the most spawns
+     * @param limit Maximum number of entries
+     * @return Pairs of {claimId, rejected spawns}, most rejections first
+     */
+    public List<long[]> getTopSpawnRejections(int limit) {
+        List<long[]> counters = spawnRejections.values();
+        counters.sort((a, b) -> Long.compare(b[1], a[1]));
+        return counters.size() > limit ? counters.subList(0, limit) : counters;
+    }
+    
+    /**
+     * Drop the spawn counter of a deleted claim; its rejections stay in the total
+     * @param claimId ID of the deleted claim
+     */
+    public void forgetClaim(int claimId) {
+        spawnRejections.remove(claimId);
+    }
+    
+    public void resetSpawnRejections() {
+        spawnRejections.clear();
+        totalSpawnRejections = 0L;
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        if (!canPistonMove(event.getBlock(), event.getBlocks(), event.getDirection(), true)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        if (!canPistonMove(event.getBlock(), event.getBlocks(), event.getDirection(), false)) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        if (!GRIEFING_ENTITIES.contains(event.getEntity().getType())) {
+            return;
+        }
+        
+        Block block = event.getBlock();
+        ClaimManager claimManager = plugin.getClaimManager();
+        if (!claimManager.isLoaded() || claimManager.getClaimIdAtChunk(block.getWorld(), block.getX() >> 4, block.getZ() >> 4) != 0) {
+            event.setCancelled(true);
+        }
+    }
+    
+    /**
+     * Check if a piston may move its blocks.
+     * Every chunk a moved block leaves or enters must be unclaimed or belong to the piston's claim.
+     * Positions in the piston's own chunk are accepted without a lookup, so contraptions that stay
+     * within one chunk cost only coordinate math; other chunks are looked up once each.
+     * @param piston The piston block
+     * @param blocks The blocks being moved
+     * @param direction The direction the blocks move in
+     * @param extending true if the piston head moves out as well
+     * @return true if the move may happen
+     */
+    private boolean canPistonMove(Block piston, List<Block> blocks, BlockFace direction, boolean extending) {
+        World world = piston.getWorld();
+        int pistonChunkX = piston.getX() >> 4;
+        int pistonChunkZ = piston.getZ() >> 4;
+        int dx = direction.getModX();
+        int dz = direction.getModZ();
+        
+        if (pistonChunksUsed) {
+            pistonChunks.clear();
+            pistonChunksUsed = false;
+        }
+        
+        if (extending && !canPistonReach(world, pistonChunkX, pistonChunkZ, (piston.getX() + dx) >> 4, (piston.getZ() + dz) >> 4)) {
+            return false;
+        }
+        for (Block block : blocks) {
+            int x = block.getX();
+            int z = block.getZ();
+            if (!canPistonReach(world, pistonChunkX, pistonChunkZ, x >> 4, z >> 4)
+                    || !canPistonReach(world, pistonChunkX, pistonChunkZ, (x + dx) >> 4, (z + dz) >> 4)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean canPistonReach(World world, int pistonChunkX, int pistonChunkZ, int chunkX, int chunkZ) {
+        if (chunkX == pistonChunkX && chunkZ == pistonChunkZ) {
+            return true; // Same chunk as the piston
+        }
+        if (!plugin.getClaimManager().isLoaded()) {
+            return false;
+        }
+        
+        int claimId = pistonClaimAt(world, chunkX, chunkZ);
+        return claimId == NO_CLAIM || claimId == pistonClaimAt(world, pistonChunkX, pistonChunkZ);
+    }
+    
+    private int pistonClaimAt(World world, int chunkX, int chunkZ) {
+        long key = ChunkLocation.pack(chunkX, chunkZ);
+        int claimId = pistonChunks.get(key);
+        if (claimId == 0) {
+            claimId = plugin.getClaimManager().getClaimIdAtChunk(world, chunkX, chunkZ);
+            if (claimId == 0) {
+                claimId = NO_CLAIM;
+            }
+            pistonChunks.put(key, claimId);
+            pistonChunksUsed = true;
+        }
+        return claimId;
+    }
+    
+    /**
+     * Check if something may cross from one chunk into another.
+     * Crossing into the wilderness or within one claim is always allowed; entering a claim
+     * from outside it depends on the claim's flag.
+     * @param world The world of both chunks
+     * @param fromChunkX Source chunk X
+     * @param fromChunkZ Source chunk Z
+     * @param toChunkX Target chunk X
+     * @param toChunkZ Target chunk Z
+     * @param flag Flag of the target claim that allows entering
+     * @return true if the target chunk may be changed
+     */
+    private boolean canEnter(World world, int fromChunkX, int fromChunkZ, int toChunkX, int toChunkZ, ClaimFlag flag) {
+        ClaimManager claimManager = plugin.getClaimManager();
+        if (!claimManager.isLoaded()) {
+            return false; // Claims unknown yet, hold borders until they are
+        }
+        
+        int toClaimId = claimManager.getClaimIdAtChunk(world, toChunkX, toChunkZ);
+        if (toClaimId == 0) {
+            return true; // Wilderness
+        }
+        if (claimManager.getClaimIdAtChunk(world, fromChunkX, fromChunkZ) == toClaimId) {
+            return true; // Within the claim
+        }
+        
+        // In lazy mode the claim may still be loading, hold the border until it is
+        Claim claim = claimManager.getClaimIfReady(toClaimId);
+        return claim != null && claim.getFlag(flag);
+    }
+    
+    private static ClaimFlag getBucketFlag(Material bucket) {
+        switch (bucket) {
+            case LAVA_BUCKET:
+                return ClaimFlag.LAVA_FLOW;
+            case WATER_BUCKET:
+            case COD_BUCKET:
+            case SALMON_BUCKET:
+            case PUFFERFISH_BUCKET:
+            case TROPICAL_FISH_BUCKET:
+            case AXOLOTL_BUCKET:
+            case TADPOLE_BUCKET:
+                return ClaimFlag.WATER_FLOW;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Lookup table from block Material to the ClaimFlag guarding right-click interaction.
+ * Built once from Bukkit tags plus config overrides, so classifying a clicked block is a
+ * single array read by material ordinal.
+ *
+ * Also counts lookups per material so admins can see which blocks are clicked most and
+ * tune the overrides. Counters are only updated from the main thread.
+ */
+public class MaterialFlagTable {
+
+    private final ClaimFlag[] flags;
+    private final long[] hits;
+    private int size;
+
+    private MaterialFlagTable() {
+        int materials = Material.values().length;
+        this.flags = new ClaimFlag[materials];
+        this.hits = new long[materials];
+    }
+
+    /**
+     * Build the table from the built-in groups and the configured overrides
+     * @param overrides Material name to flag name, or "none" to leave a material unprotected
+     * @param logger Logger for invalid override entries
+     * @return The new table
+     */
+    public static MaterialFlagTable build(Map<String, String> overrides, Logger logger) {
+        MaterialFlagTable table = new MaterialFlagTable();
+
+        // Containers
+        table.add(ClaimFlag.CONTAINER_ACCESS, Tag.SHULKER_BOXES);
+        table.add(ClaimFlag.CONTAINER_ACCESS, Tag.CAMPFIRES);
+        table.add(ClaimFlag.CONTAINER_ACCESS,
+            Material.CHEST, Material.TRAPPED_CHEST, Material.BARREL, Material.FURNACE,
+            Material.BLAST_FURNACE, Material.SMOKER, Material.BREWING_STAND, Material.DISPENSER,
+            Material.DROPPER, Material.HOPPER, Material.LECTERN, Material.JUKEBOX,
+            Material.CHISELED_BOOKSHELF, Material.BEACON
+        );
+
+        // Doors, trapdoors and gates
+        table.add(ClaimFlag.DOOR_ACCESS, Tag.DOORS);
+        table.add(ClaimFlag.DOOR_ACCESS, Tag.TRAPDOORS);
+        table.add(ClaimFlag.DOOR_ACCESS, Tag.FENCE_GATES);
+
+        // Buttons, levers and pressure plates
+        table.add(ClaimFlag.BUTTON_ACCESS, Tag.BUTTONS);
+        table.add(ClaimFlag.LEVER_ACCESS, Material.LEVER);
+        table.add(ClaimFlag.PRESSURE_PLATE_ACCESS, Tag.PRESSURE_PLATES);
+
+        // Redstone components
+        table.add(ClaimFlag.REDSTONE_ACCESS,
+            Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR, Material.REDSTONE_TORCH,
+            Material.REDSTONE_WALL_TORCH, Material.REDSTONE_BLOCK, Material.TARGET,
+            Material.DAYLIGHT_DETECTOR, Material.NOTE_BLOCK
+        );
+
+        // Config overrides win over the built-in groups
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            Material material = Material.matchMaterial(entry.getKey());
+            if (material == null) {
+                logger.warning("Unknown material in interact overrides: " + entry.getKey());
+                continue;
+            }
+
+            if (entry.getValue().equalsIgnoreCase("none")) {
+                table.set(material, null);
+                continue;
+            }
+
+            ClaimFlag flag = ClaimFlag.fromString(entry.getValue());
+            if (flag == null) {
+                logger.warning("Unknown flag in interact overrides: " + entry.getValue());
+                continue;
+            }
+            table.set(material, flag);
+        }
+
+        return table;
+    }
+
+    /**
+     * Get the flag guarding interaction with a material, and count the lookup
+     * @param material The clicked block's material
+     * @return The guarding flag, or null if interaction is not protected
+     */
+    public ClaimFlag classify(Material material) {
+        int ordinal = material.ordinal();
+        hits[ordinal]++;
+        return flags[ordinal];
+    }
+
+    public ClaimFlag getFlag(Material material) {
+        return flags[material.ordinal()];
+    }
+
+    /**
+     * Number of materials with a guarding flag
+     * @return Count of protected materials
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the most looked up materials
+     * @param limit Maximum number of entries
+     * @return Materials with their hit counts, highest first
+     */
+    public List<Map.Entry<Material, Long>> getTopHits(int limit) {
+        Material[] materials = Material.values();
+        List<Map.Entry<Material, Long>> result = new ArrayList<>();
+
+        for (int i = 0; i < hits.length; i++) {
+            if (hits[i] > 0) {
+                result.add(new AbstractMap.SimpleImmutableEntry<>(materials[i], hits[i]));
+            }
+        }
+
+        result.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    public void resetHits() {
+        Arrays.fill(hits, 0L);
+    }
+
+    private void add(ClaimFlag flag, Tag<Material> tag) {
+        if (tag == null) {
+            return; // Tag not present in this server version
+        }
+        for (Material material : tag.getValues()) {
+            add(flag, material);
+        }
+    }
+
+    private void add(ClaimFlag flag, Material... materials) {
+        for (Material material : materials) {
+            if (flags[material.ordinal()] == null) {
+                set(material, flag);
+            }
+        }
+    }
+
+    private void set(Material material, ClaimFlag flag) {
+        int ordinal = material.ordinal();
+        if (flags[ordinal] == null && flag != null) {
+            size++;
+        } else if (flags[ordinal] != null && flag == null) {
+            size--;
+        }
+        flags[ordinal] = flag;
+    }
+}
@@ -0,0 +1,29 @@
+package net.fliuxx.betterClaim.listeners;
+
+import com.destroystokyo.paper.event.entity.PreCreatureSpawnEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Rejects spawns in claims without MOB_SPAWNING before Paper constructs the entity.
+ * Only registered when Paper's PreCreatureSpawnEvent exists; elsewhere the
+ * CreatureSpawnEvent handler of {@link EnvironmentProtectionListener} does the same later.
+ */
+public class PreSpawnListener implements Listener {
+    
+    private final EnvironmentProtectionListener environmentListener;
+    
+    public PreSpawnListener(EnvironmentProtectionListener environmentListener) {
+        this.environmentListener = environmentListener;
+    }
+    
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPreCreatureSpawn(PreCreatureSpawnEvent event) {
+        if (environmentListener.isSpawnBlocked(event.getSpawnLocation(), event.getReason())) {
+            event.setCancelled(true);
+            // The rest of a natural spawn pack would land in the same claim, skip it as well
+            event.setShouldAbortSpawn(true);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.Claim;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded cache of full claim objects for lazy mode, loaded on first access by claim ID.
+ * Least recently used claims are evicted once the cache is over its size, and claims unused
+ * for longer than the expiration are evicted by {@link #evictExpired()}.
+ *
+ * Claims with unsaved changes are never evicted. Evicted claims are remembered weakly, so a
+ * claim still referenced elsewhere (an open GUI, a pending save) is handed out again instead
+ * of a second copy being loaded.
+ *
+ * {@link #get(int)} loads on the calling thread. Event handlers on the main thread use
+ * {@link #getOrLoadAsync(int)} instead, which never waits for the database.
+ */
+public class ClaimCache {
+
+    private static final class Entry {
+        private final Claim claim;
+        private long lastAccess;
+
+        private Entry(Claim claim, long now) {
+            this.claim = claim;
+            this.lastAccess = now;
+        }
+    }
+
+    private final IntFunction<Claim> loader;
+    private final Executor executor;
+    private final int maxSize;
+    private final long expireMillis;
+
+    // Guarded by this; access order, eldest first
+    private final LinkedHashMap<Integer, Entry> entries;
+    private final Map<Integer, WeakReference<Claim>> released;
+    private final Set<Integer> loading;
+
+    // Metrics, guarded by this
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache
+     * @param loader Loads a claim by ID, returning null if it does not exist
+     * @param executor Runs background loads
+     * @param maxSize Maximum number of cached claims
+     * @param expireMillis Time after which an unused claim is evicted
+     */
+    public ClaimCache(IntFunction<Claim> loader, Executor executor, int maxSize, long expireMillis) {
+        this.loader = loader;
+        this.executor = executor;
+        this.maxSize = Math.max(1, maxSize);
+        this.expireMillis = expireMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.released = new HashMap<>();
+        this.loading = new HashSet<>();
+    }
+
+    /**
+     * Get a claim, loading it if it is not cached
+     * @param claimId The claim ID
+     * @return The claim, or null if it does not exist
+     */
+    public Claim get(int claimId) {
+        synchronized (this) {
+            Claim cached = lookup(claimId);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            loading.add(claimId); // May already be there, this load takes over
+        }
+
+        // Load outside the lock; if another thread got there first, keep its copy
+        Claim loaded = null;
+        try {
+            loaded = loader.apply(claimId);
+        } finally {
+            synchronized (this) {
+                Claim cached = lookup(claimId);
+                if (cached != null) {
+                    loading.remove(claimId);
+                    loaded = cached;
+                } else if (!loading.remove(claimId)) {
+                    loaded = null; // Removed while it loaded
+                } else if (loaded != null) {
+                    insert(loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Get a claim if it is in memory, otherwise start loading it in the background.
+     * Concurrent misses for the same claim share one load.
+     * @param claimId The claim ID
+     * @return The claim, or null while it is being loaded
+     */
+    public Claim getOrLoadAsync(int claimId) {
+        synchronized (this) {
+            Claim cached = lookup(claimId);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            if (!loading.add(claimId)) {
+                return null; // Already on its way
+            }
+            misses++;
+        }
+
+        CompletableFuture.runAsync(() -> {
+            Claim loaded = null;
+            try {
+                loaded = loader.apply(claimId);
+            } finally {
+                synchronized (this) {
+                    // Not added if the claim was removed while it loaded
+                    if (loading.remove(claimId) && loaded != null && lookup(claimId) == null) {
+                        insert(loaded);
+                    }
+                }
+            }
+        }, executor);
+        return null;
+    }
+
+    /**
+     * Get a claim only if it is in memory
+     * @param claimId The claim ID
+     * @return The claim, or null if it would have to be loaded
+     */
+    public synchronized Claim getIfLoaded(int claimId) {
+        return lookup(claimId);
+    }
+
+    private Claim lookup(int claimId) {
+        Entry entry = entries.get(claimId);
+        if (entry != null) {
+            entry.lastAccess = System.currentTimeMillis();
+            return entry.claim;
+        }
+
+        WeakReference<Claim> reference = released.remove(claimId);
+        Claim claim = reference != null ? reference.get() : null;
+        if (claim != null) {
+            insert(claim); // Still referenced elsewhere, take it back
+        }
+        return claim;
+    }
+
+    /**
+     * Add a claim that was just created
+     * @param claim The claim, with its ID set
+     */
+    public synchronized void put(Claim claim) {
+        released.remove(claim.getId());
+        insert(claim);
+    }
+
+    private void insert(Claim claim) {
+        entries.put(claim.getId(), new Entry(claim, System.currentTimeMillis()));
+
+        if (entries.size() > maxSize) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest.claim != claim && !eldest.claim.isDirty()) {
+                    it.remove();
+                    release(eldest.claim);
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(int claimId) {
+        entries.remove(claimId);
+        released.remove(claimId);
+        loading.remove(claimId);
+    }
+
+    /**
+     * Evict claims that were not used within the expiration time
+     * @return Number of claims evicted
+     */
+    public synchronized int evictExpired() {
+        long cutoff = System.currentTimeMillis() - expireMillis;
+        int evicted = 0;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.lastAccess >= cutoff) {
+                break; // Access order, everything after is newer
+            }
+            if (!entry.claim.isDirty()) {
+                it.remove();
+                release(entry.claim);
+                evicted++;
+            }
+        }
+
+        released.values().removeIf(reference -> reference.get() == null);
+        return evicted;
+    }
+
+    private void release(Claim claim) {
+        released.put(claim.getId(), new WeakReference<>(claim));
+        evictions++;
+    }
+
+    /**
+     * Get the claims currently held in memory
+     * @return Snapshot of the cached claims
+     */
+    public synchronized List<Claim> getLoaded() {
+        List<Claim> loaded = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            loaded.add(entry.claim);
+        }
+        return loaded;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,272 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.utils.IntObjectHashMap;
+
+import java.util.*;
+
+/**
+ * Immutable, versioned snapshot of which claims exist, who owns them and which chunks they cover.
+ * ClaimManager publishes a new instance after every mutation batch through a single
+ * volatile write, so readers on any thread see a consistent view without locking.
+ * Writers derive the next version with {@link #toBuilder()}, which copies only the
+ * structures a batch actually touches.
+ *
+ * The {@link Claim} objects are shared by all versions and are not part of the snapshot: their
+ * flags, members and name are changed in place, so an older version hands out claims with the
+ * current values. Claim replaces each of those fields as a whole, so every read of one is
+ * consistent on its own.
+ */
+public final class ClaimIndex {
+
+    public static final ClaimIndex EMPTY = new ClaimIndex(0, new WorldClaimIndex[0],
+            new IntObjectHashMap<>(), Collections.emptyMap(), 0);
+
+    private final long version;
+    private final WorldClaimIndex[] worlds;
+    private final IntObjectHashMap<Claim> claimsById;
+    private final Map<UUID, List<Claim>> claimsByOwner;
+    private final int totalChunks;
+
+    private ClaimIndex(long version, WorldClaimIndex[] worlds, IntObjectHashMap<Claim> claimsById,
+                       Map<UUID, List<Claim>> claimsByOwner, int totalChunks) {
+        this.version = version;
+        this.worlds = worlds;
+        this.claimsById = claimsById;
+        this.claimsByOwner = claimsByOwner;
+        this.totalChunks = totalChunks;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the claim owning a chunk
+     * @param worldId Interned world ID
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The claim, or null if the chunk is unclaimed
+     */
+    public Claim getClaim(int worldId, int chunkX, int chunkZ) {
+        int claimId = getClaimId(worldId, chunkX, chunkZ);
+        return claimId != 0 ? claimsById.get(claimId) : null;
+    }
+
+    /**
+     * Get the ID of the claim owning a chunk
+     * @param worldId Interned world ID
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The claim ID, or 0 if the chunk is unclaimed
+     */
+    public int getClaimId(int worldId, int chunkX, int chunkZ) {
+        if (worldId < 0 || worldId >= worlds.length || worlds[worldId] == null) {
+            return 0;
+        }
+        return worlds[worldId].get(chunkX, chunkZ);
+    }
+
+    public boolean isAnyClaimedInRegion(int worldId, int regionX, int regionZ) {
+        if (worldId < 0 || worldId >= worlds.length || worlds[worldId] == null) {
+            return false;
+        }
+        return worlds[worldId].isAnyClaimedInRegion(regionX, regionZ);
+    }
+
+    public Claim getClaimById(int id) {
+        return claimsById.get(id);
+    }
+
+    public List<Claim> getClaims(UUID ownerUUID) {
+        return claimsByOwner.getOrDefault(ownerUUID, Collections.emptyList());
+    }
+
+    public List<Claim> getAllClaims() {
+        return claimsById.values();
+    }
+
+    public int getTotalClaims() {
+        return claimsById.size();
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public long getMemoryFootprint() {
+        long total = 0;
+        for (WorldClaimIndex world : worlds) {
+            if (world != null) {
+                total += world.memoryFootprint();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Start building the next version of this index
+     * @return A builder seeded with this index's contents
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Single-writer builder for the next index version.
+     * Each structure is copied the first time the batch modifies it; untouched worlds
+     * and maps are shared with the previous version. A touched world copies only the shards
+     * and tiles it changes (see {@link WorldClaimIndex}), while the claim and owner maps are
+     * copied whole, so apply related edits in one batch rather than one publish each.
+     */
+    public static final class Builder {
+
+        private final ClaimIndex base;
+        private WorldClaimIndex[] worlds;
+        private final BitSet copiedWorlds;
+        private IntObjectHashMap<Claim> claimsById;
+        private Map<UUID, List<Claim>> claimsByOwner;
+        private boolean copiedWorldArray;
+        private boolean copiedClaims;
+        private boolean copiedOwners;
+        private int totalChunks;
+
+        private Builder(ClaimIndex base) {
+            this.base = base;
+            this.worlds = base.worlds;
+            this.copiedWorlds = new BitSet();
+            this.claimsById = base.claimsById;
+            this.claimsByOwner = base.claimsByOwner;
+            this.totalChunks = base.totalChunks;
+        }
+
+        public Builder putClaim(Claim claim) {
+            if (!copiedClaims) {
+                claimsById = claimsById.copy();
+                copiedClaims = true;
+            }
+            claimsById.put(claim.getId(), claim);
+
+            List<Claim> ownerClaims = new ArrayList<>(ownerMap().getOrDefault(claim.getOwnerUUID(), Collections.emptyList()));
+            ownerClaims.remove(claim);
+            ownerClaims.add(claim);
+            ownerMap().put(claim.getOwnerUUID(), Collections.unmodifiableList(ownerClaims));
+            return this;
+        }
+
+        /**
+         * Add many claims at once, copying each owner's list only once
+         * @param claims The claims to add
+         * @return This builder
+         */
+        public Builder putClaims(Collection<Claim> claims) {
+            if (!copiedClaims) {
+                claimsById = claimsById.copy();
+                copiedClaims = true;
+            }
+
+            Map<UUID, List<Claim>> byOwner = new HashMap<>();
+            for (Claim claim : claims) {
+                claimsById.put(claim.getId(), claim);
+                byOwner.computeIfAbsent(claim.getOwnerUUID(), owner -> new ArrayList<>()).add(claim);
+            }
+
+            for (Map.Entry<UUID, List<Claim>> entry : byOwner.entrySet()) {
+                Set<Claim> added = new HashSet<>(entry.getValue());
+                List<Claim> ownerClaims = new ArrayList<>(ownerMap().getOrDefault(entry.getKey(), Collections.emptyList()));
+                ownerClaims.removeIf(added::contains);
+                ownerClaims.addAll(entry.getValue());
+                ownerMap().put(entry.getKey(), Collections.unmodifiableList(ownerClaims));
+            }
+            return this;
+        }
+
+        public Builder removeClaim(Claim claim) {
+            if (!copiedClaims) {
+                claimsById = claimsById.copy();
+                copiedClaims = true;
+            }
+            claimsById.remove(claim.getId());
+
+            List<Claim> ownerClaims = new ArrayList<>(ownerMap().getOrDefault(claim.getOwnerUUID(), Collections.emptyList()));
+            ownerClaims.remove(claim);
+            if (ownerClaims.isEmpty()) {
+                ownerMap().remove(claim.getOwnerUUID());
+            } else {
+                ownerMap().put(claim.getOwnerUUID(), Collections.unmodifiableList(ownerClaims));
+            }
+            return this;
+        }
+
+        public Builder putChunk(int worldId, int chunkX, int chunkZ, int claimId) {
+            WorldClaimIndex world = world(worldId);
+            int before = world.getChunkCount();
+            world.put(chunkX, chunkZ, claimId);
+            totalChunks += world.getChunkCount() - before;
+            return this;
+        }
+
+        /**
+         * Replace a world's chunk index with one built elsewhere.
+         * The builder takes ownership; the caller must not modify it afterwards.
+         * @param worldId Interned world ID
+         * @param world The new chunk index for the world
+         * @return This builder
+         */
+        public Builder putWorld(int worldId, WorldClaimIndex world) {
+            WorldClaimIndex current = worldId < worlds.length ? worlds[worldId] : null;
+            totalChunks -= current != null ? current.getChunkCount() : 0;
+
+            if (!copiedWorldArray || worldId >= worlds.length) {
+                worlds = Arrays.copyOf(worlds, Math.max(worlds.length, worldId + 1));
+                copiedWorldArray = true;
+            }
+            worlds[worldId] = world;
+            copiedWorlds.set(worldId);
+            totalChunks += world.getChunkCount();
+            return this;
+        }
+
+        public Builder removeChunk(int worldId, int chunkX, int chunkZ) {
+            if (worldId >= worlds.length || worlds[worldId] == null) {
+                return this;
+            }
+            WorldClaimIndex world = world(worldId);
+            int before = world.getChunkCount();
+            world.remove(chunkX, chunkZ);
+            totalChunks += world.getChunkCount() - before;
+            return this;
+        }
+
+        /**
+         * Publishable result of this batch
+         * @return The next index version
+         */
+        public ClaimIndex build() {
+            Map<UUID, List<Claim>> owners = copiedOwners ? Collections.unmodifiableMap(claimsByOwner) : claimsByOwner;
+            return new ClaimIndex(base.version + 1, worlds, claimsById, owners, totalChunks);
+        }
+
+        private WorldClaimIndex world(int worldId) {
+            if (!copiedWorldArray || worldId >= worlds.length) {
+                worlds = Arrays.copyOf(worlds, Math.max(worlds.length, worldId + 1));
+                copiedWorldArray = true;
+            }
+
+            if (!copiedWorlds.get(worldId)) {
+                WorldClaimIndex current = worlds[worldId];
+                worlds[worldId] = current != null ? current.copy() : new WorldClaimIndex();
+                copiedWorlds.set(worldId);
+            }
+            return worlds[worldId];
+        }
+
+        private Map<UUID, List<Claim>> ownerMap() {
+            if (!copiedOwners) {
+                claimsByOwner = new HashMap<>(claimsByOwner);
+                copiedOwners = true;
+            }
+            return claimsByOwner;
+        }
+    }
+}
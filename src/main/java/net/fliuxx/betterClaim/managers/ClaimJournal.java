@@ -0,0 +1,549 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimMember;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of claim mutations in a memory-mapped file.
+ * Every mutation is appended as a small binary record before it reaches SQLite, so a crash
+ * between database writes loses nothing: on startup the records are replayed on top of the
+ * loaded claims. Records are idempotent (they carry absolute values), so replaying ones that
+ * already reached the database is harmless.
+ *
+ * Once the database has caught up to a {@link #getMark() mark}, {@link #compact(long)} drops the
+ * records before it. The journal alternates between two files for this: the remaining records
+ * are copied into the inactive file, which only becomes active when its header is written last,
+ * so a crash mid-compaction leaves the previous file intact.
+ *
+ * Appends only write to the mapped pages, which the OS owns: they survive a crash of the server
+ * process, but a power loss or OS crash can lose records appended since the last {@link #force()}.
+ * The plugin forces the journal at every checkpoint, so that window is at most one write-behind
+ * interval. Compaction and {@link #close()} force their writes themselves; compaction does so
+ * without holding up appends.
+ *
+ * Record layout: int length, int CRC32, byte type, payload. A zero length ends the journal.
+ */
+public class ClaimJournal {
+
+    private static final int MAGIC = 0x42434A31; // "BCJ1"
+    private static final int HEADER_SIZE = 12; // Magic and generation
+    private static final int RECORD_OVERHEAD = 8; // Length and CRC
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    // Record types
+    private static final byte CLAIM = 1;
+    private static final byte CHUNK_ADDED = 2;
+    private static final byte FLAGS = 3;
+    private static final byte MEMBER_SAVED = 4;
+    private static final byte MEMBER_REMOVED = 5;
+    private static final byte DELETED = 6;
+
+    private final Logger logger;
+    private final File[] files;
+
+    // Held for a whole compaction, so only one runs at a time while appends go on
+    private final Object compactLock = new Object();
+
+    // Active file, all guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int active;
+    private long generation;
+    private int position;
+
+    // Logical offset of the active file's first record; grows with every compaction
+    private long fileBase;
+    private boolean ready;
+
+    public ClaimJournal(File directory, Logger logger) {
+        this.logger = logger;
+        this.files = new File[] {
+            new File(directory, "journal-0.dat"),
+            new File(directory, "journal-1.dat")
+        };
+    }
+
+    /**
+     * Open the newest journal file, creating one if none exists
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public synchronized void open() throws IOException {
+        files[0].getParentFile().mkdirs();
+
+        long[] generations = { readGeneration(files[0]), readGeneration(files[1]) };
+        active = generations[1] > generations[0] ? 1 : 0;
+        generation = generations[active];
+
+        channel = FileChannel.open(files[active].toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+
+        if (generation <= 0) {
+            // Fresh journal
+            generation = 1;
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, generation);
+            position = HEADER_SIZE;
+        } else {
+            position = scanEnd();
+        }
+
+        // Anything after the last valid record is a torn write, clear it so new records can follow
+        for (int i = position; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private static long readGeneration(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC ? in.readLong() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private int scanEnd() {
+        int offset = HEADER_SIZE;
+        while (readRecord(offset) != null) {
+            offset += RECORD_OVERHEAD + buffer.getInt(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Read the record at an offset
+     * @param offset Offset of the record
+     * @return Type byte followed by the payload, or null at the end of the journal or a torn record
+     */
+    private byte[] readRecord(int offset) {
+        if (offset + RECORD_OVERHEAD > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + RECORD_OVERHEAD + length > buffer.capacity()) {
+            return null;
+        }
+
+        byte[] record = new byte[length];
+        buffer.get(offset + RECORD_OVERHEAD, record);
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? record : null;
+    }
+
+    public synchronized boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+     * Allow compaction, once the records replayed at startup have been queued for saving
+     * @param ready true to allow compaction
+     */
+    public synchronized void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Get a mark covering every record appended so far
+     * @return The mark, to pass to {@link #compact(long)} once the database has caught up
+     */
+    public synchronized long getMark() {
+        return fileBase + (position - HEADER_SIZE);
+    }
+
+    public synchronized int getSize() {
+        return position - HEADER_SIZE;
+    }
+
+    public void appendClaim(Claim claim) {
+        append(CLAIM, out -> {
+            out.writeInt(claim.getId());
+            out.writeLong(claim.getOwnerUUID().getMostSignificantBits());
+            out.writeLong(claim.getOwnerUUID().getLeastSignificantBits());
+            out.writeUTF(claim.getOwnerName());
+            out.writeUTF(claim.getWorld());
+            writeNullableUTF(out, claim.getName());
+            out.writeLong(claim.getCreatedAt() != null ? claim.getCreatedAt().getTime() : 0L);
+            out.writeLong(claim.getFlagMask());
+
+            Set<ChunkLocation> chunks = claim.getChunks();
+            out.writeInt(chunks.size());
+            for (ChunkLocation chunk : chunks) {
+                out.writeInt(chunk.getX());
+                out.writeInt(chunk.getZ());
+            }
+
+            Set<ClaimMember> members = claim.getMembers();
+            out.writeInt(members.size());
+            for (ClaimMember member : members) {
+                writeMember(out, member);
+            }
+        });
+    }
+
+    public void appendChunkAdded(Claim claim, ChunkLocation chunk) {
+        append(CHUNK_ADDED, out -> {
+            out.writeInt(claim.getId());
+            out.writeInt(chunk.getX());
+            out.writeInt(chunk.getZ());
+        });
+    }
+
+    public void appendFlags(Claim claim) {
+        append(FLAGS, out -> {
+            out.writeInt(claim.getId());
+            out.writeLong(claim.getFlagMask());
+        });
+    }
+
+    public void appendMemberSaved(Claim claim, ClaimMember member) {
+        append(MEMBER_SAVED, out -> {
+            out.writeInt(claim.getId());
+            writeMember(out, member);
+        });
+    }
+
+    public void appendMemberRemoved(Claim claim, UUID playerUUID) {
+        append(MEMBER_REMOVED, out -> {
+            out.writeInt(claim.getId());
+            out.writeLong(playerUUID.getMostSignificantBits());
+            out.writeLong(playerUUID.getLeastSignificantBits());
+        });
+    }
+
+    public void appendDeleted(Claim claim) {
+        append(DELETED, out -> out.writeInt(claim.getId()));
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte type, RecordWriter writer) {
+        byte[] record;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            writer.write(out);
+            record = bytes.toByteArray();
+        } catch (IOException e) {
+            logger.severe("Failed to encode journal record: " + e.getMessage());
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        synchronized (this) {
+            if (buffer == null) {
+                return; // Journal disabled or closed
+            }
+            try {
+                ensureCapacity(position + RECORD_OVERHEAD + record.length + 4);
+            } catch (IOException e) {
+                logger.severe("Failed to grow the claim journal: " + e.getMessage());
+                return;
+            }
+
+            // Length goes in last, so a record is never visible before its contents
+            buffer.put(position + RECORD_OVERHEAD, record);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.putInt(position, record.length);
+            position += RECORD_OVERHEAD + record.length;
+        }
+    }
+
+    /**
+     * Write the records appended so far to the storage device.
+     * Blocks on disk I/O, call it off the main thread; appends are not held up meanwhile.
+     */
+    public void force() {
+        MappedByteBuffer mapped;
+        synchronized (this) {
+            mapped = buffer;
+        }
+        if (mapped == null) {
+            return;
+        }
+        try {
+            mapped.force();
+        } catch (UncheckedIOException e) {
+            logger.warning("Failed to force the claim journal to disk: " + e.getMessage());
+        }
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        long size = Math.max((long) buffer.capacity() * 2, needed);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Drop the records before a mark, once the database contains everything they describe.
+     * Blocks on disk I/O, call it off the main thread. The records are copied and forced without
+     * holding the append lock; only the records appended meanwhile are copied while it is held,
+     * right before the files are swapped.
+     * @param mark A mark from {@link #getMark()}
+     */
+    public void compact(long mark) {
+        synchronized (compactLock) {
+            MappedByteBuffer source;
+            int cut;
+            int copied;
+            int target;
+            long nextGeneration;
+            synchronized (this) {
+                if (!ready || buffer == null || mark <= fileBase) {
+                    return;
+                }
+                source = buffer;
+                cut = HEADER_SIZE + (int) (mark - fileBase);
+                copied = position;
+                target = 1 - active;
+                nextGeneration = generation + 1;
+            }
+
+            FileChannel nextChannel = null;
+            try {
+                nextChannel = FileChannel.open(files[target].toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                int tailLength = copied - cut;
+                long size = Math.max(Math.max(INITIAL_SIZE, nextChannel.size()), HEADER_SIZE + tailLength * 2L);
+                MappedByteBuffer next = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+                // Invalidate the old contents and copy the remaining records; records below the
+                // snapshot position never change, so appends can go on meanwhile
+                next.putInt(0, 0);
+                next.force();
+                next.put(HEADER_SIZE, source, cut, tailLength);
+                for (int i = HEADER_SIZE + tailLength; i < next.capacity(); i++) {
+                    next.put(i, (byte) 0);
+                }
+                next.force();
+
+                synchronized (this) {
+                    if (buffer == null) {
+                        nextChannel.close();
+                        return; // Closed meanwhile
+                    }
+
+                    // Catch up on the records appended during the copy, then write the header last
+                    int appended = position - copied;
+                    int nextPosition = HEADER_SIZE + tailLength + appended;
+                    if (nextPosition + 4 > next.capacity()) {
+                        next = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                Math.max((long) next.capacity() * 2, nextPosition + 4));
+                    }
+                    next.put(HEADER_SIZE + tailLength, buffer, copied, appended);
+                    next.putLong(4, nextGeneration);
+                    next.putInt(0, MAGIC);
+
+                    channel.close();
+                    channel = nextChannel;
+                    buffer = next;
+                    active = target;
+                    generation = nextGeneration;
+                    position = nextPosition;
+                    fileBase = mark;
+                }
+
+                // Until the header reaches the disk, a crash falls back to the previous file
+                next.force();
+            } catch (IOException | UncheckedIOException e) {
+                logger.severe("Failed to compact the claim journal: " + e.getMessage());
+                if (nextChannel != null) {
+                    synchronized (this) {
+                        if (channel != nextChannel) {
+                            try {
+                                nextChannel.close();
+                            } catch (IOException ignored) {
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the journal to claims loaded from the database
+     * @param claims Loaded claims by ID; updated in place, deleted claims are removed
+     * @return Claims removed by delete records, which still need deleting from the database
+     */
+    public synchronized List<Claim> replay(Map<Integer, Claim> claims) {
+        List<Claim> deleted = new ArrayList<>();
+        if (buffer == null) {
+            return deleted;
+        }
+
+        int records = 0;
+        int offset = HEADER_SIZE;
+        byte[] record;
+        while ((record = readRecord(offset)) != null) {
+            offset += RECORD_OVERHEAD + record.length;
+            records++;
+            try {
+                apply(record, claims, deleted);
+            } catch (IOException | RuntimeException e) {
+                logger.warning("Skipped unreadable journal record: " + e.getMessage());
+            }
+        }
+
+        if (records > 0) {
+            logger.info("Replayed " + records + " journal records");
+        }
+        return deleted;
+    }
+
+    /**
+     * Get the IDs of all claims the journal has records for
+     * @return Claim IDs, in no particular order
+     */
+    public synchronized Set<Integer> getClaimIds() {
+        Set<Integer> claimIds = new HashSet<>();
+        if (buffer == null) {
+            return claimIds;
+        }
+
+        int offset = HEADER_SIZE;
+        byte[] record;
+        while ((record = readRecord(offset)) != null) {
+            offset += RECORD_OVERHEAD + record.length;
+            if (record.length >= 5) {
+                // Every record type starts with the claim ID
+                claimIds.add(ByteBuffer.wrap(record, 1, 4).getInt());
+            }
+        }
+        return claimIds;
+    }
+
+    private void apply(byte[] record, Map<Integer, Claim> claims, List<Claim> deleted) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+
+        if (type == CLAIM) {
+            Claim claim = readClaim(in);
+            claims.put(claim.getId(), claim); // Written in full by the next save
+            return;
+        }
+
+        Claim claim = claims.get(in.readInt());
+        if (claim == null) {
+            return; // Deleted later on
+        }
+
+        switch (type) {
+            case CHUNK_ADDED:
+                claim.addChunk(new ChunkLocation(claim.getWorld(), in.readInt(), in.readInt()));
+                break;
+            case FLAGS:
+                claim.setFlagMask(in.readLong());
+                break;
+            case MEMBER_SAVED:
+                claim.addMember(readMember(in));
+                break;
+            case MEMBER_REMOVED:
+                claim.removeMember(new UUID(in.readLong(), in.readLong()));
+                break;
+            case DELETED:
+                claims.remove(claim.getId());
+                deleted.add(claim);
+                break;
+            default:
+                throw new IOException("unknown record type " + type);
+        }
+    }
+
+    private static Claim readClaim(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        UUID ownerUUID = new UUID(in.readLong(), in.readLong());
+        Claim claim = new Claim(ownerUUID, in.readUTF(), in.readUTF());
+        claim.setId(id);
+        claim.setName(readNullableUTF(in));
+        long createdAt = in.readLong();
+        if (createdAt != 0L) {
+            claim.setCreatedAt(new Timestamp(createdAt));
+        }
+        claim.setFlagMask(in.readLong());
+
+        int chunkCount = in.readInt();
+        List<ChunkLocation> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new ChunkLocation(claim.getWorld(), in.readInt(), in.readInt()));
+        }
+        claim.addChunks(chunks);
+
+        int memberCount = in.readInt();
+        List<ClaimMember> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(readMember(in));
+        }
+        claim.addMembers(members);
+        return claim;
+    }
+
+    private static void writeMember(DataOutputStream out, ClaimMember member) throws IOException {
+        out.writeLong(member.getPlayerUUID().getMostSignificantBits());
+        out.writeLong(member.getPlayerUUID().getLeastSignificantBits());
+        out.writeUTF(member.getPlayerName());
+        out.writeUTF(member.getTrustLevel());
+        out.writeLong(member.getAddedAt() != null ? member.getAddedAt().getTime() : 0L);
+    }
+
+    private static ClaimMember readMember(DataInputStream in) throws IOException {
+        UUID playerUUID = new UUID(in.readLong(), in.readLong());
+        ClaimMember member = new ClaimMember(playerUUID, in.readUTF(), in.readUTF());
+        long addedAt = in.readLong();
+        if (addedAt != 0L) {
+            member.setAddedAt(new Timestamp(addedAt));
+        }
+        return member;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Flush the mapped file to disk and close it
+     */
+    public synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close the claim journal: " + e.getMessage());
+        }
+        buffer = null;
+        channel = null;
+    }
+}
@@ -5,65 +5,606 @@ import net.fliuxx.betterClaim.models.Claim;
 import net.fliuxx.betterClaim.models.ClaimFlag;
 import net.fliuxx.betterClaim.models.ClaimMember;
 import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.utils.IntObjectHashMap;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class ClaimManager {
     
+    // Delay before retrying a failed first load, claimed land stays locked until it succeeds
+    private static final long LOAD_RETRY_TICKS = 20L * 30;
+    
     private final BetterClaim plugin;
-    private final Map<ChunkLocation, Claim> claimsByChunk;
-    private final Map<UUID, List<Claim>> claimsByOwner;
-    private final Map<Integer, Claim> claimsById;
+    
+    // World names are interned once to small IDs used by the chunk index
+    private final Map<String, Integer> worldIds;
+    
+    // Current published index version; replaced wholesale by writers holding writeLock
+    private volatile ClaimIndex index;
+    private final Object writeLock = new Object();
+    
+    // Mutations not yet known to be in the database
+    private final ClaimJournal journal;
+    
+    // Set once the claims have been loaded at least once
+    private volatile boolean loaded;
+    
+    // Lazy mode: only chunk ownership and owner -> claim IDs stay in memory, claims load on first access.
+    // Null/unused unless lazy mode is enabled; the owner map is written under writeLock
+    private final ClaimCache cache;
+    private final Map<UUID, int[]> claimIdsByOwner;
+    private volatile int lazyClaimCount;
+    
+    // Claims changed or deleted while a load reads the database, applied over its result when it is
+    // published; guarded by writeLock, null while no load is running
+    private Set<Claim> changedDuringLoad;
+    private Set<Claim> deletedDuringLoad;
+    private int loadsRunning;
     
     public ClaimManager(BetterClaim plugin) {
         this.plugin = plugin;
-        this.claimsByChunk = new ConcurrentHashMap<>();
-        this.claimsByOwner = new ConcurrentHashMap<>();
-        this.claimsById = new ConcurrentHashMap<>();
+        this.worldIds = new ConcurrentHashMap<>();
+        this.index = ClaimIndex.EMPTY;
+        this.journal = new ClaimJournal(new File(plugin.getDataFolder(), "journal"), plugin.getLogger());
+        this.claimIdsByOwner = new ConcurrentHashMap<>();
+        
+        ConfigManager config = plugin.getConfigManager();
+        this.cache = config.isLazyLoading()
+                ? new ClaimCache(plugin.getDatabaseManager()::loadClaim, plugin.getDatabaseManager().getReadExecutor(), config.getCacheSize(), config.getCacheExpiration() * 60000L)
+                : null;
+        
+        if (plugin.getConfigManager().isJournalEnabled()) {
+            try {
+                journal.open();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to open the claim journal, changes are only kept in the database: " + e.getMessage());
+            }
+        }
     }
     
     public void loadClaims() {
-        plugin.getDatabaseManager().loadAllClaims().thenAccept(claims -> {
-            claimsByChunk.clear();
-            claimsByOwner.clear();
-            claimsById.clear();
+        loadClaimsAsync();
+    }
+    
+    /**
+     * Load claims and publish them as a new index.
+     * Claims changed while the load runs are applied over what it read, see {@link #beginLoad()}.
+     * If loading fails the current index stays published, see {@link #onLoadFailed()}.
+     * @return Future completed with true once the new index is published, false if loading failed
+     */
+    private CompletableFuture<Boolean> loadClaimsAsync() {
+        beginLoad();
+        CompletableFuture<Boolean> load = cache != null ? loadLazyIndex() : loadAllClaimsIndex();
+        return load.whenComplete((published, error) -> endLoad());
+    }
+    
+    private CompletableFuture<Boolean> loadAllClaimsIndex() {
+        journal.setReady(false);
+        DatabaseManager database = plugin.getDatabaseManager();
+        return database.loadAllClaims().thenCompose(dbClaims -> {
+            if (dbClaims == null) {
+                onLoadFailed();
+                return CompletableFuture.completedFuture(false);
+            }
             
+            long start = System.currentTimeMillis();
+            List<Claim> claims = replayJournal(dbClaims);
+            
+            // Chunk indices are independent per world, build them in parallel on the read threads.
+            // The load finishes on one of those threads, so don't block it waiting for the builds
+            Map<Integer, List<Claim>> claimsByWorld = new HashMap<>();
             for (Claim claim : claims) {
-                // Index by chunks
+                claimsByWorld.computeIfAbsent(internWorld(claim.getWorld()), world -> new ArrayList<>()).add(claim);
+            }
+            
+            Map<Integer, CompletableFuture<WorldClaimIndex>> worldBuilds = new HashMap<>();
+            for (Map.Entry<Integer, List<Claim>> entry : claimsByWorld.entrySet()) {
+                worldBuilds.put(entry.getKey(), CompletableFuture.supplyAsync(
+                        () -> buildWorldIndex(entry.getValue()), database.getReadExecutor()));
+            }
+            
+            return CompletableFuture.allOf(worldBuilds.values().toArray(new CompletableFuture<?>[0]))
+                    .thenApply(built -> publishLoaded(claims, worldBuilds, start));
+        });
+    }
+    
+    /**
+     * Publish the claims read by a full load, with edits made while it ran applied over them
+     * @param claims The loaded claims, with the journal replayed
+     * @param worldBuilds Finished chunk index builds by world ID
+     * @param start Time the index build started, for logging
+     * @return true, the index is always published
+     */
+    private boolean publishLoaded(List<Claim> claims, Map<Integer, CompletableFuture<WorldClaimIndex>> worldBuilds, long start) {
+        // Build the new index off to the side and publish it in one step
+        ClaimIndex.Builder builder = ClaimIndex.EMPTY.toBuilder();
+        builder.putClaims(claims);
+        for (Map.Entry<Integer, CompletableFuture<WorldClaimIndex>> entry : worldBuilds.entrySet()) {
+            builder.putWorld(entry.getKey(), entry.getValue().join());
+        }
+        
+        synchronized (writeLock) {
+            // Edits made since the read are not in it, the claims in memory have them
+            for (Claim deleted : deletedDuringLoad) {
+                if (deleted.getId() != null) {
+                    for (ChunkLocation chunk : deleted.getChunks()) {
+                        builder.removeChunk(internWorld(chunk.getWorld()), chunk.getX(), chunk.getZ());
+                    }
+                    builder.removeClaim(deleted);
+                }
+            }
+            for (Claim changed : changedDuringLoad) {
+                if (changed.getId() != null && !deletedDuringLoad.contains(changed)) {
+                    builder.putClaim(changed); // Replaces the copy that was read
+                    for (ChunkLocation chunk : changed.getChunks()) {
+                        builder.putChunk(internWorld(chunk.getWorld()), chunk.getX(), chunk.getZ(), changed.getId());
+                    }
+                }
+            }
+            index = builder.build();
+        }
+        
+        // Replayed changes are saved like any other edit; only then may the journal drop them.
+        // Copies replaced above are dropped, the claims that replaced them save themselves
+        for (Claim claim : claims) {
+            if (claim.isDirty() && index.getClaimById(claim.getId()) == claim) {
+                plugin.getDatabaseManager().queueSave(claim);
+            }
+        }
+        journal.setReady(true);
+        loaded = true;
+        
+        plugin.getLogger().info("Loaded " + claims.size() + " claims from database across "
+                + worldBuilds.size() + " worlds (index built in " + (System.currentTimeMillis() - start) + "ms)");
+        return true;
+    }
+    
+    /**
+     * Handle a load that could not read the claims.
+     * A reload keeps the claims already published. Before the first successful load nothing is
+     * known about claimed land, so it stays denied: admins are told and the load is retried.
+     */
+    private void onLoadFailed() {
+        if (loaded) {
+            journal.setReady(true); // Already replayed by the load that built the current index
+            plugin.getLogger().severe("Claim reload failed, keeping the " + getTotalClaims() + " claims already loaded");
+            notifyAdmins("admin.reload-failed", Collections.emptyMap());
+            return;
+        }
+        
+        long retrySeconds = LOAD_RETRY_TICKS / 20;
+        plugin.getLogger().severe("Claims could not be loaded, claimed land stays locked. Retrying in " + retrySeconds + "s");
+        notifyAdmins("admin.load-failed", Collections.singletonMap("seconds", String.valueOf(retrySeconds)));
+        
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskLater(plugin, () -> {
+                if (!loaded) {
+                    loadClaims();
+                }
+            }, LOAD_RETRY_TICKS);
+        }
+    }
+    
+    private void notifyAdmins(String path, Map<String, String> placeholders) {
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        String message = plugin.getConfigManager().getMessageCatalog().getPrefixed(path).format(placeholders);
+        Bukkit.getScheduler().runTask(plugin, () -> Bukkit.broadcast(message, "betterclaim.admin"));
+    }
+    
+    /**
+     * Apply journal records written after the database was last updated
+     * @param loaded Claims loaded from the database
+     * @return The claims with the journal applied, in load order
+     */
+    private List<Claim> replayJournal(List<Claim> loaded) {
+        if (!journal.isOpen()) {
+            return loaded;
+        }
+        
+        Map<Integer, Claim> claimsById = new LinkedHashMap<>();
+        for (Claim claim : loaded) {
+            claimsById.put(claim.getId(), claim);
+        }
+        
+        for (Claim deleted : journal.replay(claimsById)) {
+            plugin.getDatabaseManager().deleteClaim(deleted);
+        }
+        return new ArrayList<>(claimsById.values());
+    }
+    
+    /**
+     * Lazy mode: build the chunk index and owner lists without loading claims
+     */
+    private CompletableFuture<Boolean> loadLazyIndex() {
+        journal.setReady(false);
+        
+        // Filled by the scan thread, read once the scan completes
+        IntObjectHashMap<WorldClaimIndex> claimWorlds = new IntObjectHashMap<>();
+        Map<Integer, WorldClaimIndex> worlds = new HashMap<>();
+        Map<UUID, List<Integer>> owners = new HashMap<>();
+        
+        return plugin.getDatabaseManager().scanClaimIndex(new DatabaseManager.ClaimIndexSink() {
+            @Override
+            public void claim(int claimId, UUID ownerUUID, String world) {
+                claimWorlds.put(claimId, worlds.computeIfAbsent(internWorld(world), id -> new WorldClaimIndex()));
+                owners.computeIfAbsent(ownerUUID, owner -> new ArrayList<>()).add(claimId);
+            }
+            
+            @Override
+            public void chunk(int claimId, int chunkX, int chunkZ) {
+                WorldClaimIndex world = claimWorlds.get(claimId);
+                if (world != null) {
+                    world.put(chunkX, chunkZ, claimId);
+                }
+            }
+        }).thenApply(success -> {
+            if (!success) {
+                onLoadFailed();
+                return false;
+            }
+            
+            // Load the claims the journal touches and replay it on them
+            Map<Integer, Claim> touched = new HashMap<>();
+            for (int claimId : journal.getClaimIds()) {
+                Claim claim = cache.get(claimId);
+                if (claim != null) {
+                    touched.put(claimId, claim);
+                }
+            }
+            
+            for (Claim deleted : journal.replay(touched)) {
+                WorldClaimIndex world = claimWorlds.get(deleted.getId());
+                for (ChunkLocation chunk : deleted.getChunks()) {
+                    if (world != null) {
+                        world.remove(chunk.getX(), chunk.getZ());
+                    }
+                }
+                List<Integer> ownerClaims = owners.get(deleted.getOwnerUUID());
+                if (ownerClaims != null) {
+                    ownerClaims.remove(deleted.getId());
+                }
+                cache.remove(deleted.getId());
+                plugin.getDatabaseManager().deleteClaim(deleted);
+            }
+            
+            for (Claim claim : touched.values()) {
+                WorldClaimIndex world = worlds.computeIfAbsent(internWorld(claim.getWorld()), id -> new WorldClaimIndex());
                 for (ChunkLocation chunk : claim.getChunks()) {
-                    claimsByChunk.put(chunk, claim);
+                    world.put(chunk.getX(), chunk.getZ(), claim.getId());
+                }
+                List<Integer> ownerClaims = owners.computeIfAbsent(claim.getOwnerUUID(), owner -> new ArrayList<>());
+                if (!ownerClaims.contains(claim.getId())) {
+                    ownerClaims.add(claim.getId());
+                }
+                cache.put(claim); // Replaces the loaded copy if the journal had a full snapshot
+            }
+            
+            int claimCount = 0;
+            synchronized (writeLock) {
+                // Edits made since the scan are not in it; claims only gain chunks until deleted
+                for (Claim deleted : deletedDuringLoad) {
+                    if (deleted.getId() == null) {
+                        continue;
+                    }
+                    WorldClaimIndex world = worlds.get(internWorld(deleted.getWorld()));
+                    for (ChunkLocation chunk : deleted.getChunks()) {
+                        if (world != null) {
+                            world.remove(chunk.getX(), chunk.getZ());
+                        }
+                    }
+                    List<Integer> ownerClaims = owners.get(deleted.getOwnerUUID());
+                    if (ownerClaims != null) {
+                        ownerClaims.remove(deleted.getId());
+                    }
+                    cache.remove(deleted.getId());
+                }
+                for (Claim changed : changedDuringLoad) {
+                    if (changed.getId() == null || deletedDuringLoad.contains(changed)) {
+                        continue;
+                    }
+                    WorldClaimIndex world = worlds.computeIfAbsent(internWorld(changed.getWorld()), id -> new WorldClaimIndex());
+                    for (ChunkLocation chunk : changed.getChunks()) {
+                        world.put(chunk.getX(), chunk.getZ(), changed.getId());
+                    }
+                    List<Integer> ownerClaims = owners.computeIfAbsent(changed.getOwnerUUID(), owner -> new ArrayList<>());
+                    if (!ownerClaims.contains(changed.getId())) {
+                        ownerClaims.add(changed.getId());
+                    }
+                    cache.put(changed);
                 }
                 
-                // Index by owner
-                claimsByOwner.computeIfAbsent(claim.getOwnerUUID(), k -> new ArrayList<>()).add(claim);
-                
-                // Index by ID
-                claimsById.put(claim.getId(), claim);
+                ClaimIndex.Builder builder = ClaimIndex.EMPTY.toBuilder();
+                worlds.forEach(builder::putWorld);
+                index = builder.build();
+                claimIdsByOwner.clear();
+                for (Map.Entry<UUID, List<Integer>> entry : owners.entrySet()) {
+                    claimIdsByOwner.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+                    claimCount += entry.getValue().size();
+                }
+                lazyClaimCount = claimCount;
+            }
+            
+            for (Claim claim : touched.values()) {
+                if (claim.isDirty() && cache.getIfLoaded(claim.getId()) == claim) {
+                    plugin.getDatabaseManager().queueSave(claim);
+                }
             }
+            journal.setReady(true);
+            loaded = true;
             
-            plugin.getLogger().info("Loaded " + claims.size() + " claims from database");
+            plugin.getLogger().info("Indexed " + claimCount + " claims across " + worlds.size()
+                    + " worlds, claims load on first use (cache size " + cache.getMaxSize() + ")");
+            return true;
         });
     }
     
+    /**
+     * Start recording the claims that change while a load runs.
+     * A load publishes what it read from the database in one step; changes made since the read
+     * would be lost with the index they were published in, so they are applied over the result.
+     * Loads may overlap, recording stops when the last one ends.
+     */
+    private void beginLoad() {
+        synchronized (writeLock) {
+            if (loadsRunning++ == 0) {
+                changedDuringLoad = Collections.newSetFromMap(new IdentityHashMap<>());
+                deletedDuringLoad = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+        }
+    }
+    
+    private void endLoad() {
+        synchronized (writeLock) {
+            if (--loadsRunning == 0) {
+                changedDuringLoad = null;
+                deletedDuringLoad = null;
+            }
+        }
+    }
+    
+    /**
+     * Remember a changed claim for the running load, if any; the caller holds writeLock
+     */
+    private void recordChange(Claim claim) {
+        if (changedDuringLoad != null) {
+            changedDuringLoad.add(claim);
+        }
+    }
+    
+    /**
+     * Remember a deleted claim for the running load, if any; the caller holds writeLock
+     */
+    private void recordDeletion(Claim claim) {
+        if (deletedDuringLoad != null) {
+            deletedDuringLoad.add(claim);
+        }
+    }
+    
+    /**
+     * Add a claim to the claim lookups; the caller holds writeLock
+     */
+    private void indexClaim(ClaimIndex.Builder builder, Claim claim) {
+        if (cache == null) {
+            builder.putClaim(claim);
+            return;
+        }
+        
+        cache.put(claim);
+        int[] current = claimIdsByOwner.getOrDefault(claim.getOwnerUUID(), new int[0]);
+        int[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = claim.getId();
+        claimIdsByOwner.put(claim.getOwnerUUID(), next);
+        lazyClaimCount++;
+    }
+    
+    /**
+     * Remove a claim from the claim lookups; the caller holds writeLock
+     */
+    private void unindexClaim(ClaimIndex.Builder builder, Claim claim) {
+        if (cache == null) {
+            builder.removeClaim(claim);
+            return;
+        }
+        
+        cache.remove(claim.getId());
+        int[] current = claimIdsByOwner.get(claim.getOwnerUUID());
+        if (current != null) {
+            int[] next = Arrays.stream(current).filter(id -> id != claim.getId()).toArray();
+            if (next.length == 0) {
+                claimIdsByOwner.remove(claim.getOwnerUUID());
+            } else {
+                claimIdsByOwner.put(claim.getOwnerUUID(), next);
+            }
+            lazyClaimCount -= current.length - next.length;
+        }
+    }
+    
+    /**
+     * Get a claim by ID, loading it in lazy mode.
+     * A lazy load blocks the calling thread on the database; commands and GUIs accept that for a
+     * single claim, event handlers use {@link #getClaimIfReady(int)} instead.
+     */
+    private Claim resolve(int claimId) {
+        return cache != null ? cache.get(claimId) : index.getClaimById(claimId);
+    }
+    
+    private WorldClaimIndex buildWorldIndex(List<Claim> claims) {
+        WorldClaimIndex world = new WorldClaimIndex();
+        for (Claim claim : claims) {
+            for (ChunkLocation chunk : claim.getChunks()) {
+                world.put(chunk.getX(), chunk.getZ(), claim.getId());
+            }
+        }
+        return world;
+    }
+    
+    /**
+     * Reload all claims from the database.
+     * Unsaved changes are written first, then the new index is built off-thread and swapped in
+     * at once; lookups keep using the previous index until then. Changes made from the flush on
+     * are applied over the reloaded claims.
+     */
     public void reloadClaims() {
-        loadClaims();
+        long start = System.currentTimeMillis();
+        ClaimIndex previous = index;
+        int previousClaims = getTotalClaims();
+        
+        beginLoad(); // Before the flush: a change made after it may not be in the database
+        queueDirtyClaims();
+        plugin.getDatabaseManager().flushPendingSavesAsync().thenCompose(saved -> {
+            if (saved < 0) {
+                // Reloading now would drop the changes that failed to save
+                plugin.getLogger().warning("Claim reload skipped: unsaved changes could not be written");
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            return loadClaimsAsync().thenAccept(reloaded -> {
+                if (reloaded) {
+                    plugin.getLogger().info("Reloaded claims in "
+                            + (System.currentTimeMillis() - start) + "ms: "
+                            + previousClaims + " claims / " + previous.getTotalChunks() + " chunks before, "
+                            + getTotalClaims() + " claims / " + index.getTotalChunks() + " chunks after");
+                }
+            });
+        }).whenComplete((result, error) -> endLoad());
+    }
+    
+    /**
+     * Get the current claim index snapshot.
+     * The returned index is immutable; use it when several lookups must agree with each other.
+     * The claims it returns are live objects, their flags and members are not snapshotted.
+     * In lazy mode it only holds chunk ownership, resolve claims with {@link #getClaimById(int)}.
+     * @return The latest published index
+     */
+    public ClaimIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Apply a batch of index changes and publish the result as the next version
+     * @param mutation The changes to apply to the builder
+     */
+    private void publish(Consumer<ClaimIndex.Builder> mutation) {
+        synchronized (writeLock) {
+            ClaimIndex.Builder builder = index.toBuilder();
+            mutation.accept(builder);
+            index = builder.build();
+        }
     }
     
     public Claim getClaim(ChunkLocation chunk) {
-        return claimsByChunk.get(chunk);
+        return getClaim(chunk.getWorld(), chunk.getX(), chunk.getZ());
     }
     
     public Claim getClaim(Chunk chunk) {
-        return getClaim(new ChunkLocation(chunk));
+        return getClaim(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+    
+    /**
+     * Get the claim covering a block position without loading or touching the chunk
+     * @param world The world
+     * @param blockX Block X coordinate
+     * @param blockZ Block Z coordinate
+     * @return The claim at that position, or null if unclaimed
+     */
+    public Claim getClaimAt(World world, int blockX, int blockZ) {
+        return getClaim(world.getName(), blockX >> 4, blockZ >> 4);
+    }
+    
+    /**
+     * Get the claim covering a location without loading or touching the chunk
+     * @param location The location
+     * @return The claim at that location, or null if unclaimed
+     */
+    public Claim getClaimAt(Location location) {
+        return getClaim(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+    
+    /**
+     * Get the claim covering a chunk by its coordinates
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The claim owning that chunk, or null if unclaimed
+     */
+    public Claim getClaimAtChunk(World world, int chunkX, int chunkZ) {
+        return getClaim(world.getName(), chunkX, chunkZ);
+    }
+    
+    /**
+     * Get the ID of the claim owning a chunk without resolving the claim, for hot paths
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The claim ID, or 0 if unclaimed
+     */
+    public int getClaimIdAtChunk(World world, int chunkX, int chunkZ) {
+        Integer worldId = worldIds.get(world.getName());
+        return worldId != null ? index.getClaimId(worldId, chunkX, chunkZ) : 0;
+    }
+    
+    private Claim getClaim(String world, int chunkX, int chunkZ) {
+        Integer worldId = worldIds.get(world);
+        if (worldId == null) {
+            return null; // No claims were ever indexed in this world
+        }
+        int claimId = index.getClaimId(worldId, chunkX, chunkZ);
+        return claimId != 0 ? resolve(claimId) : null;
+    }
+    
+    /**
+     * Check if any chunk in a 32x32-chunk region is claimed, so callers can skip whole areas of wilderness
+     * @param world The world
+     * @param regionX Region X coordinate (chunk X >> 5)
+     * @param regionZ Region Z coordinate (chunk Z >> 5)
+     * @return true if at least one chunk in the region is claimed
+     */
+    public boolean isAnyClaimedInRegion(World world, int regionX, int regionZ) {
+        Integer worldId = worldIds.get(world.getName());
+        return worldId != null && index.isAnyClaimedInRegion(worldId, regionX, regionZ);
+    }
+    
+    private int internWorld(String world) {
+        Integer worldId = worldIds.get(world);
+        if (worldId != null) {
+            return worldId;
+        }
+        
+        synchronized (worldIds) {
+            return worldIds.computeIfAbsent(world, name -> worldIds.size());
+        }
     }
     
     public List<Claim> getClaims(UUID ownerUUID) {
-        return claimsByOwner.getOrDefault(ownerUUID, new ArrayList<>());
+        if (cache == null) {
+            return index.getClaims(ownerUUID);
+        }
+        
+        int[] claimIds = claimIdsByOwner.get(ownerUUID);
+        if (claimIds == null) {
+            return Collections.emptyList();
+        }
+        List<Claim> claims = new ArrayList<>(claimIds.length);
+        for (int claimId : claimIds) {
+            Claim claim = cache.get(claimId);
+            if (claim != null) {
+                claims.add(claim);
+            }
+        }
+        return Collections.unmodifiableList(claims);
     }
     
     public List<Claim> getClaims(Player player) {
@@ -71,14 +612,46 @@ public class ClaimManager {
     }
     
     public Claim getClaimById(int id) {
-        return claimsById.get(id);
+        return resolve(id);
+    }
+    
+    /**
+     * Get a claim without waiting for the database, for event handlers on the main thread.
+     * In lazy mode a claim that is not in memory starts loading in the background and null is
+     * returned meanwhile; treat that like claims that are not loaded yet.
+     * @param claimId The claim ID, from {@link #getClaimIdAtChunk(World, int, int)}
+     * @return The claim, or null while it is loading
+     */
+    public Claim getClaimIfReady(int claimId) {
+        return cache != null ? cache.getOrLoadAsync(claimId) : index.getClaimById(claimId);
+    }
+    
+    /**
+     * Check if the claim at a block position can be checked without waiting for the database
+     * @param world The world
+     * @param blockX Block X coordinate
+     * @param blockZ Block Z coordinate
+     * @return false before the first load, or in lazy mode while the claim there is loading
+     */
+    public boolean isReadyAt(World world, int blockX, int blockZ) {
+        if (!loaded) {
+            return false;
+        }
+        if (cache == null) {
+            return true;
+        }
+        int claimId = getClaimIdAtChunk(world, blockX >> 4, blockZ >> 4);
+        return claimId == 0 || cache.getIfLoaded(claimId) != null;
     }
     
     public boolean canClaim(Player player, Chunk chunk) {
-        ChunkLocation chunkLoc = new ChunkLocation(chunk);
+        return canClaim(player, new ChunkLocation(chunk));
+    }
+    
+    public boolean canClaim(Player player, ChunkLocation chunkLoc) {
         
         // Check if chunk is already claimed
-        if (claimsByChunk.containsKey(chunkLoc)) {
+        if (getClaim(chunkLoc) != null) {
             return false;
         }
         
@@ -123,44 +696,43 @@ public class ClaimManager {
     }
     
     public Claim createClaim(Player player, Chunk chunk) {
-        if (!canClaim(player, chunk)) {
+        return createClaim(player, new ChunkLocation(chunk));
+    }
+    
+    public Claim createClaim(Player player, ChunkLocation chunkLoc) {
+        if (!canClaim(player, chunkLoc)) {
             return null;
         }
         
-        ChunkLocation chunkLoc = new ChunkLocation(chunk);
-        
         // Check if player already has a claim (for expansion)
         List<Claim> playerClaims = getClaims(player);
         
         if (!playerClaims.isEmpty() && plugin.getConfigManager().isRequireAdjacent()) {
             // Expand existing claim
             Claim existingClaim = playerClaims.get(0);
-            existingClaim.addChunk(chunkLoc);
-            
-            // Update index
-            claimsByChunk.put(chunkLoc, existingClaim);
-            
-            // Save to database
-            plugin.getDatabaseManager().saveClaim(existingClaim);
-            
-            return existingClaim;
+            return expandClaim(existingClaim, chunkLoc) ? existingClaim : null;
         } else {
             // Create new claim
-            Claim claim = new Claim(player.getUniqueId(), player.getName(), chunk.getWorld().getName());
+            Claim claim = new Claim(player.getUniqueId(), player.getName(), chunkLoc.getWorld());
             claim.addChunk(chunkLoc);
             
             // Set default flags
-            Map<ClaimFlag, Boolean> defaultFlags = plugin.getConfigManager().getDefaultFlags();
-            for (Map.Entry<ClaimFlag, Boolean> entry : defaultFlags.entrySet()) {
-                claim.setFlag(entry.getKey(), entry.getValue());
-            }
+            claim.setFlagMask(plugin.getConfigManager().getDefaultFlagMask());
             
             // Save to database
             plugin.getDatabaseManager().saveClaim(claim).thenAccept(v -> {
+                if (claim.getId() == null) {
+                    return; // Insert failed, already logged
+                }
+                journal.appendClaim(claim);
+                
                 // Update indices
-                claimsByChunk.put(chunkLoc, claim);
-                claimsByOwner.computeIfAbsent(player.getUniqueId(), k -> new ArrayList<>()).add(claim);
-                claimsById.put(claim.getId(), claim);
+                int worldId = internWorld(chunkLoc.getWorld());
+                publish(builder -> {
+                    indexClaim(builder, claim);
+                    builder.putChunk(worldId, chunkLoc.getX(), chunkLoc.getZ(), claim.getId());
+                    recordChange(claim);
+                });
             });
             
             return claim;
@@ -168,20 +740,30 @@ public class ClaimManager {
     }
     
     public boolean expandClaim(Claim claim, Chunk chunk) {
-        if (getClaim(chunk) != null) {
-            return false; // Chunk already claimed
-        }
-        
-        ChunkLocation chunkLoc = new ChunkLocation(chunk);
-        
-        // Add chunk to the claim
-        claim.addChunk(chunkLoc);
+        return expandClaim(claim, new ChunkLocation(chunk));
+    }
+    
+    public boolean expandClaim(Claim claim, ChunkLocation chunkLoc) {
+        int worldId = internWorld(chunkLoc.getWorld());
         
-        // Update index
-        claimsByChunk.put(chunkLoc, claim);
+        synchronized (writeLock) {
+            if (index.getClaimId(worldId, chunkLoc.getX(), chunkLoc.getZ()) != 0) {
+                return false; // Chunk already claimed
+            }
+            
+            // Add chunk to the claim
+            claim.addChunk(chunkLoc);
+            if (claim.getId() != null) {
+                journal.appendChunkAdded(claim, chunkLoc);
+            }
+            
+            // Update index
+            publish(builder -> builder.putChunk(worldId, chunkLoc.getX(), chunkLoc.getZ(), claim.getId()));
+            recordChange(claim);
+        }
         
-        // Save to database
-        plugin.getDatabaseManager().saveClaim(claim);
+        // Save to database with the next write-behind flush
+        plugin.getDatabaseManager().queueSave(claim);
         
         return true;
     }
@@ -189,21 +771,21 @@ public class ClaimManager {
     public boolean deleteClaim(Claim claim) {
         try {
             // Remove from indices
-            for (ChunkLocation chunk : claim.getChunks()) {
-                claimsByChunk.remove(chunk);
-            }
-            
-            List<Claim> ownerClaims = claimsByOwner.get(claim.getOwnerUUID());
-            if (ownerClaims != null) {
-                ownerClaims.remove(claim);
-                if (ownerClaims.isEmpty()) {
-                    claimsByOwner.remove(claim.getOwnerUUID());
+            publish(builder -> {
+                for (ChunkLocation chunk : claim.getChunks()) {
+                    builder.removeChunk(internWorld(chunk.getWorld()), chunk.getX(), chunk.getZ());
                 }
-            }
-            
-            claimsById.remove(claim.getId());
+                unindexClaim(builder, claim);
+                recordDeletion(claim);
+            });
             
             // Delete from database
+            if (claim.getId() != null) {
+                journal.appendDeleted(claim);
+                if (plugin.getEnvironmentListener() != null) {
+                    plugin.getEnvironmentListener().forgetClaim(claim.getId());
+                }
+            }
             plugin.getDatabaseManager().deleteClaim(claim);
             
             return true;
@@ -214,7 +796,38 @@ public class ClaimManager {
     }
     
     public boolean hasPermission(Player player, Chunk chunk, ClaimFlag flag) {
-        Claim claim = getClaim(chunk);
+        return hasPermission(player, getClaim(chunk), flag);
+    }
+    
+    /**
+     * Check a permission at a block position without touching the chunk
+     * @param player The acting player
+     * @param world The world
+     * @param blockX Block X coordinate
+     * @param blockZ Block Z coordinate
+     * @param flag The flag guarding the action
+     * @return true if the action is allowed
+     */
+    public boolean hasPermission(Player player, World world, int blockX, int blockZ, ClaimFlag flag) {
+        int claimId = getClaimIdAtChunk(world, blockX >> 4, blockZ >> 4);
+        if (claimId == 0) {
+            return hasPermission(player, (Claim) null, flag);
+        }
+        
+        Claim claim = getClaimIfReady(claimId);
+        if (claim == null) {
+            // Lazy mode and the claim is still loading, deny like before the first load
+            return player.hasPermission("betterclaim.bypass");
+        }
+        return hasPermission(player, claim, flag);
+    }
+    
+    public boolean hasPermission(Player player, Claim claim, ClaimFlag flag) {
+        if (!loaded) {
+            // Until the first load it is unknown what is claimed, deny rather than let everything through
+            return player.hasPermission("betterclaim.bypass");
+        }
+        
         if (claim == null) {
             return true; // No claim, no restrictions
         }
@@ -234,45 +847,188 @@ public class ClaimManager {
             return false; // Flag is disabled
         }
         
-        // Check trust level
-        ClaimMember member = claim.getMember(player.getUniqueId());
-        if (member == null) {
-            return false; // Not trusted
+        // Check trust level permissions, untrusted players have an empty mask
+        long granted = claim.getPermissionMask(player.getUniqueId(), plugin.getConfigManager().getTrustLevelMasks());
+        return (granted & flag.getMask()) != 0;
+    }
+    
+    /**
+     * Trust a player in a claim, or update their trust level if already trusted
+     * @param claim The claim
+     * @param playerUUID The player's UUID
+     * @param playerName The player's name
+     * @param trustLevel The trust level to grant
+     */
+    public void trustPlayer(Claim claim, UUID playerUUID, String playerName, String trustLevel) {
+        synchronized (writeLock) {
+            ClaimMember existing = claim.getMember(playerUUID);
+            ClaimMember member = new ClaimMember(playerUUID, playerName, trustLevel);
+            if (existing != null) {
+                member.setAddedAt(existing.getAddedAt());
+            }
+            claim.addMember(member);
+            if (claim.getId() != null) {
+                journal.appendMemberSaved(claim, member);
+            }
+            recordChange(claim);
         }
         
-        // Check trust level permissions
-        List<String> permissions = plugin.getConfigManager().getTrustLevelPermissions(member.getTrustLevel());
-        return permissions.contains(flag.name().toLowerCase().replace('_', '-'));
+        plugin.getDatabaseManager().queueSave(claim);
     }
     
-    public void saveAllClaims() {
-        plugin.getLogger().info("Saving all claims...");
-        
-        List<Claim> allClaims = new ArrayList<>();
-        allClaims.addAll(claimsById.values());
+    public void untrustPlayer(Claim claim, UUID playerUUID) {
+        synchronized (writeLock) {
+            claim.removeMember(playerUUID);
+            if (claim.getId() != null) {
+                journal.appendMemberRemoved(claim, playerUUID);
+            }
+            recordChange(claim);
+        }
         
-        for (Claim claim : allClaims) {
-            plugin.getDatabaseManager().saveClaim(claim);
+        plugin.getDatabaseManager().queueSave(claim);
+    }
+    
+    public void setFlag(Claim claim, ClaimFlag flag, boolean value) {
+        synchronized (writeLock) {
+            claim.setFlag(flag, value);
+            if (claim.getId() != null) {
+                journal.appendFlags(claim);
+            }
+            // Nothing in the index changes, but flag verdicts are cached per index version
+            // (ChunkFlagCache); a new version drops them
+            publish(builder -> { });
+            recordChange(claim);
         }
         
-        plugin.getLogger().info("Saved " + allClaims.size() + " claims");
+        plugin.getDatabaseManager().queueSave(claim);
+    }
+    
+    /**
+     * Write every claim with unsaved changes on the calling thread.
+     * Only for shutdown, once {@link DatabaseManager#drainWrites()} has stopped the writer thread;
+     * use {@link #saveAllClaimsAsync()} while the server runs.
+     * @return true if everything was written
+     */
+    public boolean saveAllClaims() {
+        queueDirtyClaims();
+        
+        int saved = plugin.getDatabaseManager().flushPendingSaves();
+        logSaved(saved);
+        return saved >= 0;
+    }
+    
+    /**
+     * Write every claim with unsaved changes on the writer thread.
+     * Unchanged claims are skipped, so this is cheap when nothing was edited.
+     * @return Future completed with the number of claims written, or -1 if the write failed
+     */
+    public CompletableFuture<Integer> saveAllClaimsAsync() {
+        queueDirtyClaims();
+        
+        CompletableFuture<Integer> flush = plugin.getDatabaseManager().flushPendingSavesAsync();
+        flush.thenAccept(this::logSaved);
+        return flush;
+    }
+    
+    private void queueDirtyClaims() {
+        for (Claim claim : getAllClaims()) {
+            if (claim.isDirty()) {
+                plugin.getDatabaseManager().queueSave(claim);
+            }
+        }
+    }
+    
+    private void logSaved(int saved) {
+        if (saved > 0) {
+            plugin.getLogger().info("Saved " + saved + " changed claims");
+        }
+    }
+    
+    /**
+     * Flush queued changes and drop the journal records they cover.
+     * Call from the main thread: mutations are journaled and queued there, so every record before
+     * the mark has its write queued ahead of the flush. Flushes only run on the writer thread, one
+     * at a time, so once this one succeeds every earlier flush has committed or put its claims back
+     * in the queue for this one; if it fails the records are kept.
+     * After the flush the journal is forced to disk on the writer thread, so the records kept past
+     * this checkpoint also survive a power loss.
+     */
+    public void checkpoint() {
+        long mark = journal.getMark();
+        plugin.getDatabaseManager().flushPendingSavesAsync().thenAccept(saved -> {
+            journal.force();
+            if (saved >= 0) {
+                journal.compact(mark);
+            }
+        });
+    }
+    
+    public boolean isLazy() {
+        return cache != null;
     }
     
+    /**
+     * Get the claim cache used in lazy mode
+     * @return The cache, or null if every claim is kept in memory
+     */
+    public ClaimCache getClaimCache() {
+        return cache;
+    }
+    
+    /**
+     * Evict claims that were not used recently, in lazy mode
+     * @return Number of claims evicted
+     */
+    public int evictIdleClaims() {
+        return cache != null ? cache.evictExpired() : 0;
+    }
+    
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    public ClaimJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Get all claims in memory. In lazy mode this is only the claims currently loaded.
+     * @return The claims
+     */
     public List<Claim> getAllClaims() {
-        return new ArrayList<>(claimsById.values());
+        return cache != null ? cache.getLoaded() : index.getAllClaims();
     }
     
     public List<Claim> getClaimsByPlayer(String playerName) {
-        return claimsById.values().stream()
+        if (cache != null) {
+            List<Claim> claims = new ArrayList<>();
+            for (int claimId : plugin.getDatabaseManager().findClaimIdsByOwnerName(playerName)) {
+                Claim claim = cache.get(claimId);
+                if (claim != null) {
+                    claims.add(claim);
+                }
+            }
+            return claims;
+        }
+        
+        return getAllClaims().stream()
                 .filter(claim -> claim.getOwnerName().equalsIgnoreCase(playerName))
                 .collect(Collectors.toList());
     }
     
     public int getTotalClaims() {
-        return claimsById.size();
+        return cache != null ? lazyClaimCount : index.getTotalClaims();
     }
     
     public int getTotalChunks() {
-        return claimsByChunk.size();
+        return index.getTotalChunks();
+    }
+    
+    /**
+     * Get the heap used by the chunk index tables
+     * @return Approximate size of the chunk index in bytes
+     */
+    public long getChunkIndexMemory() {
+        return index.getMemoryFootprint();
     }
 }
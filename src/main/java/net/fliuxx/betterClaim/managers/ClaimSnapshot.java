@@ -0,0 +1,229 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimMember;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of every claim, written on clean shutdown and read on the next start
+ * instead of rebuilding claims from SQL rows.
+ *
+ * A snapshot is only trusted if its token matches the one stored in the database when it
+ * was written; the database clears that token as soon as the snapshot is read, so any
+ * write made afterwards (or a crash before the next clean shutdown) makes it stale.
+ *
+ * Layout: header (magic, version, token, claim count, string count, payload length, CRC32),
+ * then the payload: a table of interned strings followed by the claims, which refer to
+ * strings by index and store chunks as packed x/z longs.
+ */
+public final class ClaimSnapshot {
+
+    private static final int MAGIC = 0x42435331; // "BCS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+
+    private ClaimSnapshot() {
+    }
+
+    /**
+     * Write a snapshot, replacing the previous one atomically
+     * @param file Destination file
+     * @param claims Claims to write, in the order they should be loaded
+     * @param token Token that the database will hold for this snapshot
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(File file, Collection<Claim> claims, long token) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream claimBytes = new ByteArrayOutputStream(claims.size() * 64);
+        DataOutputStream out = new DataOutputStream(claimBytes);
+
+        for (Claim claim : claims) {
+            out.writeInt(claim.getId());
+            out.writeLong(claim.getOwnerUUID().getMostSignificantBits());
+            out.writeLong(claim.getOwnerUUID().getLeastSignificantBits());
+            out.writeInt(intern(strings, claim.getOwnerName()));
+            out.writeInt(intern(strings, claim.getWorld()));
+            out.writeInt(intern(strings, claim.getName()));
+            out.writeLong(time(claim.getCreatedAt()));
+            out.writeLong(time(claim.getLastAccessed()));
+            out.writeLong(claim.getFlagMask());
+
+            Set<ChunkLocation> chunks = claim.getChunks();
+            out.writeInt(chunks.size());
+            for (ChunkLocation chunk : chunks) {
+                out.writeLong(((long) chunk.getX() << 32) | (chunk.getZ() & 0xFFFFFFFFL));
+            }
+
+            Set<ClaimMember> members = claim.getMembers();
+            out.writeInt(members.size());
+            for (ClaimMember member : members) {
+                out.writeLong(member.getPlayerUUID().getMostSignificantBits());
+                out.writeLong(member.getPlayerUUID().getLeastSignificantBits());
+                out.writeInt(intern(strings, member.getPlayerName()));
+                out.writeInt(intern(strings, member.getTrustLevel()));
+                out.writeLong(time(member.getAddedAt()));
+            }
+        }
+        out.flush();
+
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream(strings.size() * 16);
+        DataOutputStream stringOut = new DataOutputStream(stringBytes);
+        for (String value : strings.keySet()) {
+            byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+            stringOut.writeInt(utf.length);
+            stringOut.write(utf);
+        }
+        stringOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(stringBytes.toByteArray());
+        crc.update(claimBytes.toByteArray());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(token);
+        header.putInt(claims.size());
+        header.putInt(strings.size());
+        header.putInt(stringBytes.size() + claimBytes.size());
+        header.putLong(crc.getValue());
+        header.flip();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(stringBytes.toByteArray()));
+            channel.write(ByteBuffer.wrap(claimBytes.toByteArray()));
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a snapshot through a memory-mapped view of the file
+     * @param file The snapshot file
+     * @param token Token stored in the database; the snapshot must carry the same one
+     * @return The claims in the order they were written
+     * @throws IOException If the file is missing, stale, corrupt or of another version
+     */
+    public static List<Claim> read(File file, long token) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("snapshot is truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("unknown snapshot format");
+            }
+            if (buffer.getLong() != token) {
+                throw new IOException("snapshot is stale");
+            }
+            int claimCount = buffer.getInt();
+            int stringCount = buffer.getInt();
+            int payloadLength = buffer.getInt();
+            long expectedCrc = buffer.getLong();
+            if (HEADER_SIZE + (long) payloadLength != channel.size()) {
+                throw new IOException("snapshot is truncated");
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, payloadLength));
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("snapshot checksum mismatch");
+            }
+
+            try {
+                return readClaims(buffer, claimCount, stringCount);
+            } catch (RuntimeException e) {
+                throw new IOException("snapshot is corrupt", e);
+            }
+        }
+    }
+
+    private static List<Claim> readClaims(ByteBuffer buffer, int claimCount, int stringCount) {
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] utf = new byte[buffer.getInt()];
+            buffer.get(utf);
+            strings[i] = utf.length == 0 ? "" : new String(utf, StandardCharsets.UTF_8).intern();
+        }
+
+        List<Claim> claims = new ArrayList<>(claimCount);
+        List<ChunkLocation> chunks = new ArrayList<>();
+        List<ClaimMember> members = new ArrayList<>();
+        for (int i = 0; i < claimCount; i++) {
+            int id = buffer.getInt();
+            UUID ownerUUID = new UUID(buffer.getLong(), buffer.getLong());
+            String ownerName = string(strings, buffer.getInt());
+            String world = string(strings, buffer.getInt());
+
+            Claim claim = new Claim(ownerUUID, ownerName, world);
+            claim.setId(id);
+            claim.setName(string(strings, buffer.getInt()));
+            claim.setCreatedAt(timestamp(buffer.getLong()));
+            claim.setLastAccessed(timestamp(buffer.getLong()));
+            claim.setFlagMask(buffer.getLong());
+
+            chunks.clear();
+            int chunkCount = buffer.getInt();
+            for (int c = 0; c < chunkCount; c++) {
+                long key = buffer.getLong();
+                chunks.add(new ChunkLocation(world, (int) (key >> 32), (int) key));
+            }
+            claim.addChunks(chunks);
+
+            members.clear();
+            int memberCount = buffer.getInt();
+            for (int m = 0; m < memberCount; m++) {
+                UUID playerUUID = new UUID(buffer.getLong(), buffer.getLong());
+                ClaimMember member = new ClaimMember(playerUUID, string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+                member.setAddedAt(timestamp(buffer.getLong()));
+                members.add(member);
+            }
+            claim.addMembers(members);
+
+            // Matches the database as of the snapshot, nothing to write back
+            claim.clearDirty();
+            claims.add(claim);
+        }
+        return claims;
+    }
+
+    private static int intern(Map<String, Integer> strings, String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    private static long time(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : Long.MIN_VALUE;
+    }
+
+    private static Timestamp timestamp(long time) {
+        return time != Long.MIN_VALUE ? new Timestamp(time) : null;
+    }
+}
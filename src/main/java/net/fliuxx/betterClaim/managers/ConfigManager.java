@@ -2,12 +2,18 @@ package net.fliuxx.betterClaim.managers;
 
 import net.fliuxx.betterClaim.BetterClaim;
 import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.utils.MessageCatalog;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.logging.Logger;
 
 public class ConfigManager {
     
@@ -15,6 +21,12 @@ public class ConfigManager {
     private FileConfiguration config;
     private FileConfiguration messages;
     
+    // Compiled messages, replaced as a whole on every load
+    private volatile MessageCatalog messageCatalog;
+    
+    // Trust level name -> ClaimFlag bitmask, rebuilt on every load
+    private volatile Map<String, Long> trustLevelMasks = Collections.emptyMap();
+    
     public ConfigManager(BetterClaim plugin) {
         this.plugin = plugin;
     }
@@ -25,10 +37,44 @@ public class ConfigManager {
         plugin.reloadConfig();
         config = plugin.getConfig();
         
+        // Compile trust levels into flag masks
+        compileTrustLevels();
+        
         // Load messages config
         loadMessagesConfig();
     }
     
+    private void compileTrustLevels() {
+        trustLevelMasks = compileTrustLevels(config.getConfigurationSection("trust-levels"), plugin.getLogger());
+    }
+    
+    /**
+     * Compile trust level definitions into flag masks
+     * @param section The trust-levels section, each level listing the flags it grants; may be null
+     * @param logger Told about flag names that do not exist
+     * @return Unmodifiable map of trust level name to ClaimFlag bitmask
+     */
+    public static Map<String, Long> compileTrustLevels(ConfigurationSection section, Logger logger) {
+        Map<String, Long> compiled = new HashMap<>();
+        
+        if (section != null) {
+            for (String trustLevel : section.getKeys(false)) {
+                long mask = 0L;
+                for (String flagName : section.getStringList(trustLevel)) {
+                    ClaimFlag flag = ClaimFlag.fromString(flagName);
+                    if (flag == null) {
+                        logger.warning("Unknown flag '" + flagName + "' in trust level " + trustLevel);
+                        continue;
+                    }
+                    mask |= flag.getMask();
+                }
+                compiled.put(trustLevel, mask);
+            }
+        }
+        
+        return Collections.unmodifiableMap(compiled);
+    }
+    
     private void loadMessagesConfig() {
         File messagesFile = new File(plugin.getDataFolder(), "messages.yml");
         
@@ -37,6 +83,32 @@ public class ConfigManager {
         }
         
         messages = YamlConfiguration.loadConfiguration(messagesFile);
+        addMissingMessages();
+        messageCatalog = MessageCatalog.compile(messages);
+    }
+    
+    /**
+     * Fill in messages added in newer versions from the bundled messages.yml.
+     * An existing file is never overwritten, so without this new keys would be missing on upgrade.
+     */
+    private void addMissingMessages() {
+        InputStream bundled = plugin.getResource("messages.yml");
+        if (bundled == null) {
+            return;
+        }
+        
+        YamlConfiguration defaults = YamlConfiguration.loadConfiguration(new InputStreamReader(bundled, StandardCharsets.UTF_8));
+        int added = 0;
+        for (String path : defaults.getKeys(true)) {
+            if (!defaults.isConfigurationSection(path) && !messages.isSet(path)) {
+                messages.set(path, defaults.get(path));
+                added++;
+            }
+        }
+        
+        if (added > 0) {
+            plugin.getLogger().info("Using defaults for " + added + " messages missing from messages.yml");
+        }
     }
     
     public void saveMessagesConfig() {
@@ -57,6 +129,18 @@ public class ConfigManager {
         return config.getString("database.filename", "claims.db");
     }
     
+    public int getDatabaseReadPoolSize() {
+        return config.getInt("database.read-pool-size", 2);
+    }
+    
+    public int getDatabaseWriteQueueSize() {
+        return config.getInt("database.write-queue-size", 1000);
+    }
+    
+    public int getDatabaseShutdownTimeout() {
+        return config.getInt("database.shutdown-timeout", 10);
+    }
+    
     public int getMaxChunksPerClaim() {
         return config.getInt("claim.max-chunks-per-claim", 100);
     }
@@ -81,21 +165,78 @@ public class ConfigManager {
         return config.getInt("claim.auto-save-interval", 5);
     }
     
-    public Map<ClaimFlag, Boolean> getDefaultFlags() {
-        Map<ClaimFlag, Boolean> flags = new HashMap<>();
-        
+    public boolean isLazyLoading() {
+        return config.getBoolean("performance.lazy-loading", false);
+    }
+    
+    public boolean isJournalEnabled() {
+        return config.getBoolean("performance.journal", true);
+    }
+    
+    public boolean isSnapshotEnabled() {
+        return config.getBoolean("performance.snapshot", true);
+    }
+    
+    public int getWriteBehindDelay() {
+        return config.getInt("performance.write-behind-delay", 5);
+    }
+    
+    /**
+     * Get the configured default flags as a bitmask
+     * @return Bitmask of flags enabled for new claims
+     */
+    public long getDefaultFlagMask() {
+        long mask = 0L;
         for (ClaimFlag flag : ClaimFlag.values()) {
-            String path = "default-flags." + flag.name().toLowerCase().replace('_', '-');
-            flags.put(flag, config.getBoolean(path, flag.getDefaultValue()));
+            if (config.getBoolean("default-flags." + flag.getConfigKey(), flag.getDefaultValue())) {
+                mask |= flag.getMask();
+            }
         }
-        
-        return flags;
+        return mask;
     }
     
     public List<String> getTrustLevelPermissions(String trustLevel) {
         return config.getStringList("trust-levels." + trustLevel);
     }
     
+    /**
+     * Get the compiled flag masks of all trust levels.
+     * A new map instance is published on every config load and never modified afterwards.
+     * @return Trust level name to ClaimFlag bitmask
+     */
+    public Map<String, Long> getTrustLevelMasks() {
+        return trustLevelMasks;
+    }
+    
+    /**
+     * Get the window in which repeated denial messages of the same kind are suppressed
+     * @return Window in milliseconds, 0 to send every denial
+     */
+    public long getDenialMessageWindow() {
+        return config.getLong("protection.denial-messages.window", 2000L);
+    }
+    
+    public boolean isDenialActionBarSummary() {
+        return config.getBoolean("protection.denial-messages.action-bar-summary", true);
+    }
+    
+    /**
+     * Get the configured block interaction overrides
+     * @return Material name to flag name, or "none" to leave the material unprotected
+     */
+    public Map<String, String> getInteractOverrides() {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("protection.interact-overrides");
+        
+        if (section != null) {
+            for (String material : section.getKeys(false)) {
+                overrides.put(material, section.getString(material, "none"));
+            }
+        }
+        
+        return overrides;
+    }
+    
     public String getGUITitle(String guiType) {
         return config.getString("gui.titles." + guiType, "&6&lGUI");
     }
@@ -113,6 +254,15 @@ public class ConfigManager {
     }
     
     // Messages getters
+    /**
+     * Get the compiled messages.
+     * Prefer this over getMessage on hot paths, templates are already colorized.
+     * @return The current message catalog
+     */
+    public MessageCatalog getMessageCatalog() {
+        return messageCatalog;
+    }
+    
     public String getMessage(String path) {
         return messages.getString(path, "&cMessage not found: " + path);
     }
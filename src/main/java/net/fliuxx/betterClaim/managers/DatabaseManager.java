@@ -2,22 +2,91 @@ package net.fliuxx.betterClaim.managers;
 
 import net.fliuxx.betterClaim.BetterClaim;
 import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimChanges;
 import net.fliuxx.betterClaim.models.ClaimFlag;
 import net.fliuxx.betterClaim.models.ClaimMember;
 import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.utils.CachedConnection;
+import net.fliuxx.betterClaim.utils.IntObjectHashMap;
+import net.fliuxx.betterClaim.utils.SerialWriteExecutor;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseManager {
     
     private final BetterClaim plugin;
     private String databaseUrl;
+    private File snapshotFile;
+    
+    // Single connection for all writes, guarded by writeLock
+    private CachedConnection writer;
+    private final Object writeLock = new Object();
+    
+    // Read-only connections for loads, borrowed one at a time
+    private final BlockingQueue<CachedConnection> readers;
+    private final List<CachedConnection> allReaders;
+    
+    // Changed claims waiting for the next write-behind flush, keyed by claim ID
+    private final Map<Integer, Claim> pendingSaves;
+    
+    // Deleted claims whose delete failed, retried with the next flush
+    private final Set<Claim> pendingDeletes;
+    
+    // All async writes run in order on this thread
+    private SerialWriteExecutor writeExecutor;
+    
+    // Async loads run here, one thread per read connection
+    private ExecutorService readExecutor;
+    
+    // SQLITE_BUSY / SQLITE_LOCKED result codes, retried with backoff
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final int MAX_BUSY_RETRIES = 4;
+    private static final long BUSY_BACKOFF_MS = 25L;
+    
+    // Longest wait for a free read connection, the same as busy_timeout
+    private static final long READER_TIMEOUT_MS = 5000L;
+    
+    private static final String SNAPSHOT_TOKEN_KEY = "snapshot_token";
+    
+    // Stored in PRAGMA user_version; 0 is the original unversioned schema
+    private static final int SCHEMA_VERSION = 2;
+    private static final int CHUNK_COORD_LIMIT = 1 << 21;
+    // Bits of every flag this version knows, stored alongside the flag mask
+    private static final long KNOWN_FLAGS = (1L << ClaimFlag.values().length) - 1;
+    
+    // World row IDs, filled at startup and by ensureWorlds
+    private final Map<String, Integer> worldIds;
+    private final Map<Integer, String> worldNames;
+    private final AtomicLong busyRetries;
     
     public DatabaseManager(BetterClaim plugin) {
         this.plugin = plugin;
+        this.readers = new LinkedBlockingQueue<>();
+        this.allReaders = new ArrayList<>();
+        this.pendingSaves = new ConcurrentHashMap<>();
+        this.pendingDeletes = ConcurrentHashMap.newKeySet();
+        this.busyRetries = new AtomicLong();
+        this.worldIds = new ConcurrentHashMap<>();
+        this.worldNames = new ConcurrentHashMap<>();
     }
     
     public void initializeDatabase() {
@@ -33,10 +102,24 @@ public class DatabaseManager {
             
             // Store database URL for creating connections
             databaseUrl = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+            snapshotFile = new File(dataFolder, filename + ".snapshot");
             
-            // Create tables with a fresh connection
+            // Open the writer and create tables with it
+            writer = openConnection(false);
             createTables();
             
+            // Open the read pool once the schema exists
+            int readPoolSize = Math.max(1, plugin.getConfigManager().getDatabaseReadPoolSize());
+            for (int i = 0; i < readPoolSize; i++) {
+                CachedConnection reader = openConnection(true);
+                allReaders.add(reader);
+                readers.add(reader);
+            }
+            readExecutor = newReadExecutor(readPoolSize);
+            
+            writeExecutor = new SerialWriteExecutor("BetterClaim-DB-Writer",
+                    plugin.getConfigManager().getDatabaseWriteQueueSize(), plugin.getLogger());
+            
             plugin.getLogger().info("Database initialized successfully");
             
         } catch (SQLException e) {
@@ -45,7 +128,32 @@ public class DatabaseManager {
         }
     }
     
-    private Connection getConnection() throws SQLException {
+    private static ExecutorService newReadExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "BetterClaim-DB-Reader-" + count.incrementAndGet());
+            thread.setDaemon(true); // Shut down by closeConnection()
+            return thread;
+        });
+    }
+    
+    /**
+     * Get the executor for database reads and the work that follows them, such as building
+     * the index from loaded claims. Keeps blocking JDBC calls off the common pool.
+     * @return The executor; runs tasks on the caller before the database is initialized
+     */
+    public Executor getReadExecutor() {
+        ExecutorService executor = readExecutor;
+        return executor != null ? executor : Runnable::run;
+    }
+    
+    /**
+     * Open and configure a connection, done once per connection for the plugin's lifetime
+     * @param readOnly true for a read pool connection
+     * @return The configured connection
+     * @throws SQLException If the connection cannot be opened
+     */
+    private CachedConnection openConnection(boolean readOnly) throws SQLException {
         Connection conn = DriverManager.getConnection(databaseUrl);
         // Configure SQLite connection for better concurrency
         try (Statement stmt = conn.createStatement()) {
@@ -54,335 +162,1302 @@ public class DatabaseManager {
             stmt.execute("PRAGMA cache_size=10000");
             stmt.execute("PRAGMA temp_store=memory");
             stmt.execute("PRAGMA mmap_size=268435456"); // 256MB
+            stmt.execute("PRAGMA busy_timeout=5000");
+            stmt.execute("PRAGMA foreign_keys=ON"); // Deleting a claim removes its chunks and members
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only=ON");
+            }
+        }
+        
+        if (!readOnly) {
+            conn.setAutoCommit(false); // Every write runs in an explicit transaction
+        }
+        return new CachedConnection(conn);
+    }
+    
+    /**
+     * Borrow a read connection, waiting a bounded time if all of them are in use.
+     * Lazy loads for commands and GUIs still read on the main thread; the timeout caps how long
+     * the server can stall when the pool is busy with a long scan.
+     * @return The connection, to give back with {@link #returnReader(CachedConnection)}
+     * @throws SQLException If no connection became free in time
+     */
+    private CachedConnection borrowReader() throws SQLException {
+        try {
+            CachedConnection reader = readers.poll(READER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (reader == null) {
+                throw new SQLException("Timed out after " + READER_TIMEOUT_MS + "ms waiting for a database connection");
+            }
+            return reader;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+    
+    private void returnReader(CachedConnection reader) {
+        readers.add(reader);
+    }
+    
+    private void rollback(CachedConnection conn) {
+        try {
+            conn.getConnection().rollback();
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to roll back transaction: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * A unit of work on the writer connection, including its commit
+     */
+    @FunctionalInterface
+    private interface WriteTransaction<T> {
+        T run(CachedConnection conn) throws SQLException;
+    }
+    
+    /**
+     * Run a transaction on the writer, retrying with backoff while the database is busy.
+     * The caller must hold writeLock. Each failed attempt is rolled back before the next one,
+     * so the transaction must be safe to run again from the start.
+     * @param transaction The work to run
+     * @return The transaction's result
+     * @throws SQLException If it fails for another reason or keeps failing
+     */
+    private <T> T runWriteTransaction(WriteTransaction<T> transaction) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transaction.run(writer);
+            } catch (SQLException e) {
+                rollback(writer);
+                if (!isBusy(e) || attempt >= MAX_BUSY_RETRIES) {
+                    throw e;
+                }
+                
+                busyRetries.incrementAndGet();
+                try {
+                    Thread.sleep(BUSY_BACKOFF_MS << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
         }
-        return conn;
+    }
+    
+    private static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xFF; // Extended codes carry the primary code in the low byte
+        return code == SQLITE_BUSY || code == SQLITE_LOCKED;
     }
     
     private void createTables() throws SQLException {
-        try (Connection conn = getConnection()) {
-            // Claims table
+        synchronized (writeLock) {
+            Connection conn = writer.getConnection();
+            int version = getSchemaVersion(conn);
+            
+            if (version == 0 && tableExists(conn, "claims")) {
+                migrateFromV1(conn);
+            } else if (version == 0) {
+                try (Statement stmt = conn.createStatement()) {
+                    createSchema(stmt);
+                    stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+                }
+                conn.commit();
+            } else if (version > SCHEMA_VERSION) {
+                throw new SQLException("Database schema v" + version + " is newer than this plugin supports (v" + SCHEMA_VERSION + ")");
+            }
+            
+            loadWorlds(conn);
+        }
+    }
+    
+    private void createSchema(Statement stmt) throws SQLException {
+        // World names, referenced by ID from claims and chunk keys
+        String createWorldsTable = """
+            CREATE TABLE IF NOT EXISTS worlds (
+                id INTEGER PRIMARY KEY,
+                name TEXT NOT NULL UNIQUE
+            )
+        """;
+        
+        // Claims table; flags is a bitmask of ClaimFlag values, flags_known the flags it covers
         String createClaimsTable = """
             CREATE TABLE IF NOT EXISTS claims (
                 id INTEGER PRIMARY KEY AUTOINCREMENT,
-                owner_uuid TEXT NOT NULL,
+                owner_uuid BLOB NOT NULL,
                 owner_name TEXT NOT NULL,
-                world TEXT NOT NULL,
+                world_id INTEGER NOT NULL REFERENCES worlds(id),
                 name TEXT,
+                flags INTEGER NOT NULL,
+                flags_known INTEGER NOT NULL,
                 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 last_accessed TIMESTAMP DEFAULT CURRENT_TIMESTAMP
             )
         """;
         
-        // Claim chunks table
+        // Claim chunks table, keyed by packed (world, x, z) so a chunk belongs to at most one claim
         String createChunksTable = """
             CREATE TABLE IF NOT EXISTS claim_chunks (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                claim_id INTEGER NOT NULL,
-                chunk_x INTEGER NOT NULL,
-                chunk_z INTEGER NOT NULL,
-                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
-                UNIQUE(claim_id, chunk_x, chunk_z)
-            )
-        """;
-        
-        // Claim flags table
-        String createFlagsTable = """
-            CREATE TABLE IF NOT EXISTS claim_flags (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                claim_id INTEGER NOT NULL,
-                flag_name TEXT NOT NULL,
-                flag_value BOOLEAN NOT NULL,
-                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
-                UNIQUE(claim_id, flag_name)
+                chunk_key INTEGER PRIMARY KEY,
+                claim_id INTEGER NOT NULL REFERENCES claims(id) ON DELETE CASCADE
             )
         """;
         
         // Claim members table
         String createMembersTable = """
             CREATE TABLE IF NOT EXISTS claim_members (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                claim_id INTEGER NOT NULL,
-                player_uuid TEXT NOT NULL,
+                claim_id INTEGER NOT NULL REFERENCES claims(id) ON DELETE CASCADE,
+                player_uuid BLOB NOT NULL,
                 player_name TEXT NOT NULL,
                 trust_level TEXT NOT NULL,
                 added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
-                UNIQUE(claim_id, player_uuid)
+                PRIMARY KEY (claim_id, player_uuid)
+            ) WITHOUT ROWID
+        """;
+        
+        // Plugin bookkeeping, such as the token of the current claim snapshot
+        String createMetaTable = """
+            CREATE TABLE IF NOT EXISTS meta (
+                key TEXT PRIMARY KEY,
+                value TEXT NOT NULL
             )
         """;
         
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(createClaimsTable);
-                stmt.execute(createChunksTable);
-                stmt.execute(createFlagsTable);
-                stmt.execute(createMembersTable);
-            }
+        stmt.execute(createWorldsTable);
+        stmt.execute(createClaimsTable);
+        stmt.execute(createChunksTable);
+        stmt.execute(createMembersTable);
+        stmt.execute(createMetaTable);
+        // Chunks of a claim, in claim order for the load scan
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_claim_chunks_claim ON claim_chunks (claim_id, chunk_key)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_claims_owner ON claims (owner_uuid)");
+    }
+    
+    private int getSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
         }
     }
     
-    public CompletableFuture<Void> saveClaim(Claim claim) {
-        if (plugin.getConfigManager().isAsyncSaves()) {
-            return CompletableFuture.runAsync(() -> saveClaimSync(claim));
-        } else {
-            return CompletableFuture.completedFuture(saveClaimSync(claim));
+    private boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
         }
     }
     
-    private Void saveClaimSync(Claim claim) {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
+    /**
+     * Convert the original schema (text UUIDs, a row per flag, chunks without a world) to v2.
+     * The old database is copied to a backup first and the conversion runs in one transaction,
+     * so a failure leaves the v1 tables untouched.
+     */
+    private void migrateFromV1(Connection conn) throws SQLException {
+        long start = System.currentTimeMillis();
+        File databaseFile = new File(databaseUrl.substring("jdbc:sqlite:".length()));
+        
+        conn.setAutoCommit(true);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+        long sizeBefore = databaseFile.length();
+        File backup = new File(databaseFile.getPath() + ".v1.bak");
+        try {
+            Files.copy(databaseFile.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new SQLException("Could not back up the database before migrating: " + e.getMessage(), e);
+        }
+        conn.setAutoCommit(false);
+        
+        int claims = 0;
+        int chunks = 0;
+        int duplicateChunks = 0;
+        int members = 0;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE claim_members RENAME TO claim_members_v1");
+            stmt.execute("ALTER TABLE claim_flags RENAME TO claim_flags_v1");
+            stmt.execute("ALTER TABLE claim_chunks RENAME TO claim_chunks_v1");
+            stmt.execute("ALTER TABLE claims RENAME TO claims_v1");
+            createSchema(stmt);
             
-            if (claim.getId() == null) {
-                // Insert new claim
-                insertClaim(claim, conn);
-            } else {
-                // Update existing claim
-                updateClaim(claim, conn);
+            // Flags first, they are folded into the claim rows
+            Map<Integer, long[]> flagsById = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT claim_id, flag_name, flag_value FROM claim_flags_v1")) {
+                while (rs.next()) {
+                    ClaimFlag flag = ClaimFlag.fromString(rs.getString(2));
+                    if (flag == null) {
+                        continue; // Flag no longer exists
+                    }
+                    long[] flags = flagsById.computeIfAbsent(rs.getInt(1), id -> new long[2]);
+                    flags[1] |= flag.getMask();
+                    if (rs.getBoolean(3)) {
+                        flags[0] |= flag.getMask();
+                    }
+                }
             }
             
-            // Save chunks
-            saveClaimChunks(claim, conn);
+            Map<String, Integer> worlds = new HashMap<>();
+            IntObjectHashMap<Integer> worldByClaim = new IntObjectHashMap<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT id, owner_uuid, owner_name, world, name, created_at, last_accessed FROM claims_v1");
+                 PreparedStatement insertWorld = conn.prepareStatement("INSERT INTO worlds (id, name) VALUES (?, ?)");
+                 PreparedStatement insert = conn.prepareStatement("INSERT INTO claims " +
+                         "(id, owner_uuid, owner_name, world_id, name, flags, flags_known, created_at, last_accessed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    String world = rs.getString(4);
+                    Integer worldId = worlds.get(world);
+                    if (worldId == null) {
+                        worldId = worlds.size() + 1;
+                        worlds.put(world, worldId);
+                        insertWorld.setInt(1, worldId);
+                        insertWorld.setString(2, world);
+                        insertWorld.executeUpdate();
+                    }
+                    worldByClaim.put(id, worldId);
+                    
+                    long[] flags = flagsById.getOrDefault(id, new long[2]);
+                    insert.setInt(1, id);
+                    insert.setBytes(2, toBytes(UUID.fromString(rs.getString(2))));
+                    insert.setString(3, rs.getString(3));
+                    insert.setInt(4, worldId);
+                    insert.setString(5, rs.getString(5));
+                    insert.setLong(6, flags[0]);
+                    insert.setLong(7, flags[1]);
+                    insert.setObject(8, rs.getObject(6));
+                    insert.setObject(9, rs.getObject(7));
+                    insert.addBatch();
+                    claims++;
+                }
+                insert.executeBatch();
+            }
             
-            // Save flags
-            saveClaimFlags(claim, conn);
+            // Oldest claim keeps a chunk that was claimed twice; chunks of deleted claims are dropped
+            try (ResultSet rs = stmt.executeQuery("SELECT claim_id, chunk_x, chunk_z FROM claim_chunks_v1 ORDER BY claim_id");
+                 PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO claim_chunks (chunk_key, claim_id) VALUES (?, ?)")) {
+                while (rs.next()) {
+                    Integer worldId = worldByClaim.get(rs.getInt(1));
+                    if (worldId == null) {
+                        continue;
+                    }
+                    insert.setLong(1, chunkKey(worldId, rs.getInt(2), rs.getInt(3)));
+                    insert.setInt(2, rs.getInt(1));
+                    if (insert.executeUpdate() > 0) {
+                        chunks++;
+                    } else {
+                        duplicateChunks++;
+                    }
+                }
+            }
             
-            // Save members
-            saveClaimMembers(claim, conn);
+            try (ResultSet rs = stmt.executeQuery("SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members_v1");
+                 PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO claim_members " +
+                         "(claim_id, player_uuid, player_name, trust_level, added_at) VALUES (?, ?, ?, ?, ?)")) {
+                while (rs.next()) {
+                    if (worldByClaim.get(rs.getInt(1)) == null) {
+                        continue;
+                    }
+                    insert.setInt(1, rs.getInt(1));
+                    insert.setBytes(2, toBytes(UUID.fromString(rs.getString(2))));
+                    insert.setString(3, rs.getString(3));
+                    insert.setString(4, rs.getString(4));
+                    insert.setObject(5, rs.getObject(5));
+                    insert.addBatch();
+                    members++;
+                }
+                insert.executeBatch();
+            }
+            
+            // Keep new claim IDs above every ID handed out before, deleted ones included
+            stmt.execute("DELETE FROM sqlite_sequence WHERE name = 'claims'");
+            stmt.execute("UPDATE sqlite_sequence SET name = 'claims' WHERE name = 'claims_v1'");
             
+            stmt.execute("DROP TABLE claim_members_v1");
+            stmt.execute("DROP TABLE claim_flags_v1");
+            stmt.execute("DROP TABLE claim_chunks_v1");
+            stmt.execute("DROP TABLE claims_v1");
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
             conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw new SQLException("Failed to migrate the database to schema v" + SCHEMA_VERSION + ": " + e.getMessage(), e);
+        }
+        
+        // Give the space of the old tables back
+        conn.setAutoCommit(true);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("VACUUM");
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } finally {
+            conn.setAutoCommit(false);
+        }
+        
+        if (duplicateChunks > 0) {
+            plugin.getLogger().warning(duplicateChunks + " chunks were claimed more than once, kept them in the oldest claim");
+        }
+        plugin.getLogger().info("Migrated database to schema v" + SCHEMA_VERSION + " in " + (System.currentTimeMillis() - start) + "ms: "
+                + claims + " claims, " + chunks + " chunks, " + members + " members, "
+                + (sizeBefore / 1024) + " KB -> " + (databaseFile.length() / 1024) + " KB (backup: " + backup.getName() + ")");
+    }
+    
+    private void loadWorlds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT id, name FROM worlds")) {
+            while (rs.next()) {
+                worldIds.put(rs.getString(2), rs.getInt(1));
+                worldNames.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        conn.commit();
+    }
+    
+    /**
+     * Make sure every claim's world has a row, in its own transaction so a failed claim write
+     * can never leave a cached ID behind that was rolled back. The caller must hold writeLock.
+     * @param claims Claims about to be written
+     */
+    private void ensureWorlds(Collection<Claim> claims) throws SQLException {
+        for (Claim claim : claims) {
+            String world = claim.getWorld();
+            if (worldIds.containsKey(world)) {
+                continue;
+            }
             
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save claim: " + e.getMessage());
-            e.printStackTrace();
+            runWriteTransaction(conn -> {
+                PreparedStatement insert = conn.prepare("INSERT OR IGNORE INTO worlds (name) VALUES (?)");
+                insert.setString(1, world);
+                insert.executeUpdate();
+                
+                PreparedStatement select = conn.prepare("SELECT id FROM worlds WHERE name = ?");
+                select.setString(1, world);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    int id = rs.getInt(1);
+                    conn.getConnection().commit();
+                    worldNames.put(id, world);
+                    worldIds.put(world, id);
+                    return id;
+                }
+            });
+        }
+    }
+    
+    private int worldId(String world) throws SQLException {
+        Integer id = worldIds.get(world);
+        if (id == null) {
+            throw new SQLException("World " + world + " has no ID");
+        }
+        return id;
+    }
+    
+    private String worldName(int worldId) throws SQLException {
+        String name = worldNames.get(worldId);
+        if (name == null) {
+            throw new SQLException("Unknown world ID " + worldId);
+        }
+        return name;
+    }
+    
+    /**
+     * Pack a chunk into its stored key: world ID in the top 20 bits, then 22 bits each of x and z.
+     * 22 bits cover +-2097152 chunks, beyond the 30 million block world limit.
+     * @param worldId The world's row ID
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The chunk key
+     */
+    static long chunkKey(int worldId, int chunkX, int chunkZ) throws SQLException {
+        if (chunkX < -CHUNK_COORD_LIMIT || chunkX >= CHUNK_COORD_LIMIT || chunkZ < -CHUNK_COORD_LIMIT || chunkZ >= CHUNK_COORD_LIMIT) {
+            throw new SQLException("Chunk " + chunkX + ", " + chunkZ + " is outside the storable range");
+        }
+        return ((long) worldId << 44) | ((chunkX & 0x3FFFFFL) << 22) | (chunkZ & 0x3FFFFFL);
+    }
+    
+    static int chunkKeyX(long key) {
+        return (int) (key << 20 >> 42);
+    }
+    
+    static int chunkKeyZ(long key) {
+        return (int) (key << 42 >> 42);
+    }
+    
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+    
+    private static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    
+    /**
+     * Get a claim's flag mask from its stored columns; flags added since the row was written
+     * take their default value
+     */
+    private static long storedFlagMask(long flags, long known) {
+        return (flags & known) | (ClaimFlag.getDefaultMask() & ~known);
+    }
+    
+    /**
+     * Write a claim's pending changes now.
+     * New claims are inserted in full; existing claims only write the aspects marked dirty.
+     * @param claim The claim to save
+     * @return Future completed once the claim is written
+     */
+    public CompletableFuture<Void> saveClaim(Claim claim) {
+        if (claim.getId() != null) {
+            pendingSaves.remove(claim.getId());
         }
         
-        return null;
+        if (plugin.getConfigManager().isAsyncSaves() && writeExecutor != null) {
+            return writeExecutor.submit(() -> saveClaimSync(claim));
+        } else {
+            return CompletableFuture.completedFuture(saveClaimSync(claim));
+        }
+    }
+    
+    /**
+     * Schedule a claim to be written by the next write-behind flush.
+     * Repeated calls before the flush are coalesced into a single write.
+     * @param claim The changed claim
+     */
+    public void queueSave(Claim claim) {
+        if (claim.getId() == null) {
+            saveClaim(claim); // Needs an ID first, insert right away
+            return;
+        }
+        pendingSaves.put(claim.getId(), claim);
+    }
+    
+    /**
+     * Write all queued claims in a single transaction.
+     * While the writer thread runs, the flush is handed to it and this waits for the result:
+     * flushes never run side by side, so one that completes has seen every flush queued before it.
+     * @return Number of claims written, or -1 if the transaction failed
+     */
+    public int flushPendingSaves() {
+        if (writeExecutor != null && writeExecutor.isAccepting() && !writeExecutor.isWorkerThread()) {
+            try {
+                return flushPendingSavesAsync().join();
+            } catch (CompletionException e) {
+                return -1; // Already logged by the executor
+            }
+        }
+        return flushQueued();
     }
     
-    private void insertClaim(Claim claim, Connection conn) throws SQLException {
-        String sql = "INSERT INTO claims (owner_uuid, owner_name, world, name) VALUES (?, ?, ?, ?)";
+    private int flushQueued() {
+        boolean deletesFailed = false;
+        for (Iterator<Claim> it = pendingDeletes.iterator(); it.hasNext(); ) {
+            Claim claim = it.next();
+            if (deleteClaimSync(claim)) {
+                it.remove();
+            } else {
+                deletesFailed = true;
+            }
+        }
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, claim.getOwnerUUID().toString());
-            stmt.setString(2, claim.getOwnerName());
-            stmt.setString(3, claim.getWorld());
-            stmt.setString(4, claim.getName());
-            
-            stmt.executeUpdate();
+        if (pendingSaves.isEmpty()) {
+            return deletesFailed ? -1 : 0;
+        }
+        
+        List<Claim> batch = new ArrayList<>(pendingSaves.size());
+        for (Iterator<Claim> it = pendingSaves.values().iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        int saved = saveClaimsSync(batch);
+        return deletesFailed ? -1 : saved;
+    }
+    
+    /**
+     * Queue a write-behind flush on the writer thread
+     * @return Future completed with the number of claims written
+     */
+    public CompletableFuture<Integer> flushPendingSavesAsync() {
+        if (writeExecutor == null) {
+            return CompletableFuture.completedFuture(flushQueued());
+        }
+        // Queued even when nothing is pending, so completion also covers every write submitted before
+        return writeExecutor.submit(this::flushQueued);
+    }
+    
+    public int getPendingSaveCount() {
+        return pendingSaves.size();
+    }
+    
+    /**
+     * Get the writer queue, for stats
+     * @return The executor, or null before the database is initialized
+     */
+    public SerialWriteExecutor getWriteExecutor() {
+        return writeExecutor;
+    }
+    
+    public long getBusyRetries() {
+        return busyRetries.get();
+    }
+    
+    private Void saveClaimSync(Claim claim) {
+        saveClaimsSync(Collections.singletonList(claim));
+        return null;
+    }
+    
+    private int saveClaimsSync(Collection<Claim> claims) {
+        synchronized (writeLock) {
+            if (writer == null) {
+                plugin.getLogger().warning("Database is closed, could not save " + claims.size() + " claims");
+                return -1;
+            }
             
-            try (ResultSet keys = stmt.getGeneratedKeys()) {
-                if (keys.next()) {
-                    claim.setId(keys.getInt(1));
+            try {
+                ensureWorlds(claims);
+                return runWriteTransaction(conn -> writeClaimsTransaction(claims, conn));
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to save claims: " + e.getMessage());
+                e.printStackTrace();
+                
+                // Keep every unsaved claim queued, the journal relies on it
+                for (Claim claim : claims) {
+                    if (claim.getId() != null && claim.isDirty() && !claim.isDeleted()) {
+                        pendingSaves.put(claim.getId(), claim);
+                    }
                 }
+                return -1;
             }
         }
     }
     
-    private void updateClaim(Claim claim, Connection conn) throws SQLException {
-        String sql = "UPDATE claims SET owner_name = ?, name = ?, last_accessed = CURRENT_TIMESTAMP WHERE id = ?";
+    private int writeClaimsTransaction(Collection<Claim> claims, CachedConnection conn) throws SQLException {
+        // Changes taken per claim, restored if the transaction fails
+        Map<Claim, ClaimChanges> written = new IdentityHashMap<>();
+        List<Claim> inserted = new ArrayList<>();
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, claim.getOwnerName());
-            stmt.setString(2, claim.getName());
-            stmt.setInt(3, claim.getId());
+        try {
+            for (Claim claim : claims) {
+                if (claim.isDeleted()) {
+                    continue; // Deleted while queued
+                }
+                
+                ClaimChanges changes = claim.takeChanges();
+                if (claim.getId() == null) {
+                    changes.rewrite(Claim.DIRTY_ALL);
+                    inserted.add(claim);
+                } else if (changes.isEmpty()) {
+                    continue; // Nothing changed since the last save
+                }
+                
+                written.put(claim, changes);
+                writeClaim(claim, changes, conn);
+            }
+            conn.getConnection().commit();
+            return written.size();
             
-            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // The deltas may have been partly applied, rewrite the affected aspects in full next time
+            for (Map.Entry<Claim, ClaimChanges> entry : written.entrySet()) {
+                entry.getKey().markDirty(entry.getValue().getAspects());
+            }
+            for (Claim claim : inserted) {
+                claim.setId(null); // The insert was rolled back
+            }
+            throw e;
         }
     }
     
-    private void saveClaimChunks(Claim claim, Connection conn) throws SQLException {
-        // Delete existing chunks
-        String deleteSql = "DELETE FROM claim_chunks WHERE claim_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-            stmt.setInt(1, claim.getId());
-            stmt.executeUpdate();
+    private void writeClaim(Claim claim, ClaimChanges changes, CachedConnection conn) throws SQLException {
+        int aspects = changes.getAspects();
+        boolean inserted = claim.getId() == null;
+        if (inserted) {
+            // Insert new claim
+            insertClaim(claim, conn);
+        } else if (changes.isRewrite(Claim.DIRTY_METADATA)) {
+            // Restored from the journal or a failed save, the row may be missing
+            upsertClaim(claim, conn);
+        } else if ((aspects & Claim.DIRTY_METADATA) != 0) {
+            // Update existing claim
+            updateClaim(claim, conn);
         }
         
-        // Insert chunks
-        String insertSql = "INSERT INTO claim_chunks (claim_id, chunk_x, chunk_z) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-            for (ChunkLocation chunk : claim.getChunks()) {
-                stmt.setInt(1, claim.getId());
-                stmt.setInt(2, chunk.getX());
-                stmt.setInt(3, chunk.getZ());
-                stmt.addBatch();
-            }
-            stmt.executeBatch();
+        // Save chunks
+        if (changes.isRewrite(Claim.DIRTY_CHUNKS)) {
+            saveClaimChunks(claim, conn);
+        } else if ((aspects & Claim.DIRTY_CHUNKS) != 0) {
+            saveClaimChunkChanges(claim, changes, conn);
+        }
+        
+        // Save flags, a single column; a new claim wrote them with its row
+        if (!inserted && (aspects & Claim.DIRTY_FLAGS) != 0) {
+            saveClaimFlags(claim, conn);
+        }
+        
+        // Save members
+        if (changes.isRewrite(Claim.DIRTY_MEMBERS)) {
+            saveClaimMembers(claim, conn);
+        } else if ((aspects & Claim.DIRTY_MEMBERS) != 0) {
+            saveClaimMemberChanges(claim, changes, conn);
         }
     }
     
-    private void saveClaimFlags(Claim claim, Connection conn) throws SQLException {
-        // Delete existing flags
-        String deleteSql = "DELETE FROM claim_flags WHERE claim_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-            stmt.setInt(1, claim.getId());
-            stmt.executeUpdate();
+    private void insertClaim(Claim claim, CachedConnection conn) throws SQLException {
+        String sql = "INSERT INTO claims (owner_uuid, owner_name, world_id, name, flags, flags_known) VALUES (?, ?, ?, ?, ?, ?)";
+        
+        PreparedStatement stmt = conn.prepareInsert(sql);
+        stmt.setBytes(1, toBytes(claim.getOwnerUUID()));
+        stmt.setString(2, claim.getOwnerName());
+        stmt.setInt(3, worldId(claim.getWorld()));
+        stmt.setString(4, claim.getName());
+        stmt.setLong(5, claim.getFlagMask());
+        stmt.setLong(6, KNOWN_FLAGS);
+        
+        stmt.executeUpdate();
+        
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            if (keys.next()) {
+                claim.setId(keys.getInt(1));
+            }
         }
+    }
+    
+    private void updateClaim(Claim claim, CachedConnection conn) throws SQLException {
+        String sql = "UPDATE claims SET owner_name = ?, name = ?, last_accessed = CURRENT_TIMESTAMP WHERE id = ?";
+        
+        PreparedStatement stmt = conn.prepare(sql);
+        stmt.setString(1, claim.getOwnerName());
+        stmt.setString(2, claim.getName());
+        stmt.setInt(3, claim.getId());
+        
+        stmt.executeUpdate();
+    }
+    
+    private void upsertClaim(Claim claim, CachedConnection conn) throws SQLException {
+        String sql = "INSERT INTO claims (id, owner_uuid, owner_name, world_id, name, flags, flags_known, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT(id) DO UPDATE SET owner_name = excluded.owner_name, name = excluded.name, last_accessed = CURRENT_TIMESTAMP";
         
-        // Insert flags
-        String insertSql = "INSERT INTO claim_flags (claim_id, flag_name, flag_value) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-            for (Map.Entry<ClaimFlag, Boolean> entry : claim.getFlags().entrySet()) {
-                stmt.setInt(1, claim.getId());
-                stmt.setString(2, entry.getKey().name());
-                stmt.setBoolean(3, entry.getValue());
-                stmt.addBatch();
+        PreparedStatement stmt = conn.prepare(sql);
+        stmt.setInt(1, claim.getId());
+        stmt.setBytes(2, toBytes(claim.getOwnerUUID()));
+        stmt.setString(3, claim.getOwnerName());
+        stmt.setInt(4, worldId(claim.getWorld()));
+        stmt.setString(5, claim.getName());
+        stmt.setLong(6, claim.getFlagMask());
+        stmt.setLong(7, KNOWN_FLAGS);
+        stmt.setTimestamp(8, claim.getCreatedAt());
+        
+        stmt.executeUpdate();
+    }
+    
+    private void saveClaimChunks(Claim claim, CachedConnection conn) throws SQLException {
+        // Delete existing chunks
+        PreparedStatement deleteStmt = conn.prepare("DELETE FROM claim_chunks WHERE claim_id = ?");
+        deleteStmt.setInt(1, claim.getId());
+        deleteStmt.executeUpdate();
+        
+        insertClaimChunks(claim, claim.getChunks(), conn);
+    }
+    
+    private void saveClaimChunkChanges(Claim claim, ClaimChanges changes, CachedConnection conn) throws SQLException {
+        if (!changes.getRemovedChunks().isEmpty()) {
+            // Only while still ours, another claim in the same flush may have taken it over
+            PreparedStatement deleteStmt = conn.prepare("DELETE FROM claim_chunks WHERE chunk_key = ? AND claim_id = ?");
+            int worldId = worldId(claim.getWorld());
+            for (ChunkLocation chunk : changes.getRemovedChunks()) {
+                deleteStmt.setLong(1, chunkKey(worldId, chunk.getX(), chunk.getZ()));
+                deleteStmt.setInt(2, claim.getId());
+                deleteStmt.addBatch();
             }
-            stmt.executeBatch();
+            deleteStmt.executeBatch();
+        }
+        
+        if (!changes.getAddedChunks().isEmpty()) {
+            insertClaimChunks(claim, changes.getAddedChunks(), conn);
+        }
+    }
+    
+    private void insertClaimChunks(Claim claim, Collection<ChunkLocation> chunks, CachedConnection conn) throws SQLException {
+        // Upsert: the chunk may still be stored for a claim that released it later in the same flush,
+        // or for this claim after a failed save; the in-memory index already decided who owns it
+        PreparedStatement insertStmt = conn.prepare("INSERT INTO claim_chunks (chunk_key, claim_id) VALUES (?, ?) " +
+                "ON CONFLICT(chunk_key) DO UPDATE SET claim_id = excluded.claim_id");
+        int worldId = worldId(claim.getWorld());
+        for (ChunkLocation chunk : chunks) {
+            insertStmt.setLong(1, chunkKey(worldId, chunk.getX(), chunk.getZ()));
+            insertStmt.setInt(2, claim.getId());
+            insertStmt.addBatch();
         }
+        insertStmt.executeBatch();
     }
     
-    private void saveClaimMembers(Claim claim, Connection conn) throws SQLException {
+    private void saveClaimFlags(Claim claim, CachedConnection conn) throws SQLException {
+        PreparedStatement stmt = conn.prepare("UPDATE claims SET flags = ?, flags_known = ? WHERE id = ?");
+        stmt.setLong(1, claim.getFlagMask());
+        stmt.setLong(2, KNOWN_FLAGS);
+        stmt.setInt(3, claim.getId());
+        stmt.executeUpdate();
+    }
+    
+    private void saveClaimMembers(Claim claim, CachedConnection conn) throws SQLException {
         // Delete existing members
-        String deleteSql = "DELETE FROM claim_members WHERE claim_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
-            stmt.setInt(1, claim.getId());
-            stmt.executeUpdate();
+        PreparedStatement deleteStmt = conn.prepare("DELETE FROM claim_members WHERE claim_id = ?");
+        deleteStmt.setInt(1, claim.getId());
+        deleteStmt.executeUpdate();
+        
+        upsertClaimMembers(claim, claim.getMembers(), conn);
+    }
+    
+    private void saveClaimMemberChanges(Claim claim, ClaimChanges changes, CachedConnection conn) throws SQLException {
+        if (!changes.getRemovedMembers().isEmpty()) {
+            PreparedStatement deleteStmt = conn.prepare("DELETE FROM claim_members WHERE claim_id = ? AND player_uuid = ?");
+            for (UUID playerUUID : changes.getRemovedMembers()) {
+                deleteStmt.setInt(1, claim.getId());
+                deleteStmt.setBytes(2, toBytes(playerUUID));
+                deleteStmt.addBatch();
+            }
+            deleteStmt.executeBatch();
         }
         
-        // Insert members
-        String insertSql = "INSERT INTO claim_members (claim_id, player_uuid, player_name, trust_level) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-            for (ClaimMember member : claim.getMembers()) {
-                stmt.setInt(1, claim.getId());
-                stmt.setString(2, member.getPlayerUUID().toString());
-                stmt.setString(3, member.getPlayerName());
-                stmt.setString(4, member.getTrustLevel());
-                stmt.addBatch();
+        List<ClaimMember> saved = new ArrayList<>();
+        for (UUID playerUUID : changes.getSavedMembers()) {
+            ClaimMember member = claim.getMember(playerUUID);
+            if (member != null) { // Removed again after the changes were taken
+                saved.add(member);
             }
-            stmt.executeBatch();
         }
+        if (!saved.isEmpty()) {
+            upsertClaimMembers(claim, saved, conn);
+        }
+    }
+    
+    private void upsertClaimMembers(Claim claim, Collection<ClaimMember> members, CachedConnection conn) throws SQLException {
+        PreparedStatement upsertStmt = conn.prepare(
+            "INSERT INTO claim_members (claim_id, player_uuid, player_name, trust_level, added_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT(claim_id, player_uuid) DO UPDATE SET player_name = excluded.player_name, trust_level = excluded.trust_level"
+        );
+        for (ClaimMember member : members) {
+            upsertStmt.setInt(1, claim.getId());
+            upsertStmt.setBytes(2, toBytes(member.getPlayerUUID()));
+            upsertStmt.setString(3, member.getPlayerName());
+            upsertStmt.setString(4, member.getTrustLevel());
+            upsertStmt.setTimestamp(5, member.getAddedAt());
+            upsertStmt.addBatch();
+        }
+        upsertStmt.executeBatch();
     }
     
+    /**
+     * Load every claim off the main thread
+     * @return Future with the claims, or with null if they could not be read
+     */
     public CompletableFuture<List<Claim>> loadAllClaims() {
-        return CompletableFuture.supplyAsync(this::loadAllClaimsSync);
+        return CompletableFuture.supplyAsync(this::loadAllClaimsSync, getReadExecutor());
     }
     
+    /**
+     * Load every claim with three full-table scans stitched together by claim_id,
+     * instead of a query per claim and child table. Child rows are streamed ordered by
+     * claim_id, which their (claim_id, ...) indices serve without a sort.
+     * @return The claims, or null if they could not be read
+     */
     private List<Claim> loadAllClaimsSync() {
+        List<Claim> snapshot = loadSnapshot();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        
         List<Claim> claims = new ArrayList<>();
         
-        try (Connection conn = getConnection()) {
-            String sql = "SELECT * FROM claims ORDER BY created_at DESC";
+        CachedConnection conn = null;
+        try {
+            conn = borrowReader();
+            long start = System.currentTimeMillis();
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                while (rs.next()) {
-                    Claim claim = createClaimFromResultSet(rs);
-                    
-                    // Load chunks
-                    loadClaimChunks(claim, conn);
-                    
-                    // Load flags
-                    loadClaimFlags(claim, conn);
-                    
-                    // Load members
-                    loadClaimMembers(claim, conn);
-                    
-                    claims.add(claim);
-                }
+            IntObjectHashMap<Claim> claimsById = loadClaimRows(conn, claims);
+            int chunks = loadChunks(claimsById, conn.prepare("SELECT claim_id, chunk_key FROM claim_chunks ORDER BY claim_id"));
+            loadMembers(claimsById, conn.prepare("SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members ORDER BY claim_id"));
+            
+            for (Claim claim : claims) {
+                // Freshly loaded, nothing to write back
+                claim.clearDirty();
             }
             
+            plugin.getLogger().info("Read " + claims.size() + " claims with " + chunks + " chunks in "
+                    + (System.currentTimeMillis() - start) + "ms");
+            
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to load claims: " + e.getMessage());
             e.printStackTrace();
+            return null; // Never hand out half-loaded claims, nor an empty list that looks like no claims
+        } finally {
+            if (conn != null) {
+                returnReader(conn);
+            }
         }
         
         return claims;
     }
     
+    /**
+     * Load claims from the snapshot written at the last clean shutdown, if it is still current.
+     * The database token is cleared in the same step, so the snapshot is used at most once.
+     * @return The claims, or null to load from the tables instead
+     */
+    private List<Claim> loadSnapshot() {
+        if (!plugin.getConfigManager().isSnapshotEnabled() || !snapshotFile.isFile()) {
+            return null;
+        }
+        
+        String token = takeMeta(SNAPSHOT_TOKEN_KEY);
+        if (token == null) {
+            plugin.getLogger().info("Claim snapshot is out of date, loading from the database");
+            return null;
+        }
+        
+        try {
+            long start = System.currentTimeMillis();
+            List<Claim> claims = ClaimSnapshot.read(snapshotFile, Long.parseLong(token));
+            plugin.getLogger().info("Read " + claims.size() + " claims from snapshot in "
+                    + (System.currentTimeMillis() - start) + "ms");
+            return claims;
+        } catch (IOException | NumberFormatException e) {
+            plugin.getLogger().warning("Could not use the claim snapshot (" + e.getMessage() + "), loading from the database");
+            return null;
+        }
+    }
+    
+    /**
+     * Write a snapshot of all claims for the next start. Call only once every change is saved.
+     * @param claims All claims
+     */
+    public void writeSnapshot(Collection<Claim> claims) {
+        if (!plugin.getConfigManager().isSnapshotEnabled() || snapshotFile == null) {
+            return;
+        }
+        
+        // Same order as the table load, owners' first claim comes first
+        List<Claim> ordered = new ArrayList<>(claims.size());
+        for (Claim claim : claims) {
+            if (claim.getId() != null && !claim.isDeleted()) {
+                ordered.add(claim);
+            }
+        }
+        ordered.sort(Comparator.comparing(Claim::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        
+        long token = ThreadLocalRandom.current().nextLong();
+        try {
+            long start = System.currentTimeMillis();
+            ClaimSnapshot.write(snapshotFile, ordered, token);
+            // Only valid once the token is committed; a crash before leaves the old token or none
+            if (putMeta(SNAPSHOT_TOKEN_KEY, Long.toString(token))) {
+                plugin.getLogger().info("Wrote snapshot of " + ordered.size() + " claims in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to write claim snapshot: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Read and delete a meta value in one transaction
+     * @param key The key
+     * @return The value, or null if absent or unreadable
+     */
+    private String takeMeta(String key) {
+        synchronized (writeLock) {
+            if (writer == null) {
+                return null;
+            }
+            try {
+                return runWriteTransaction(conn -> {
+                    String value = null;
+                    PreparedStatement select = conn.prepare("SELECT value FROM meta WHERE key = ?");
+                    select.setString(1, key);
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next()) {
+                            value = rs.getString(1);
+                        }
+                    }
+                    
+                    PreparedStatement delete = conn.prepare("DELETE FROM meta WHERE key = ?");
+                    delete.setString(1, key);
+                    delete.executeUpdate();
+                    conn.getConnection().commit();
+                    return value;
+                });
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to read " + key + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+    
+    private boolean putMeta(String key, String value) {
+        synchronized (writeLock) {
+            if (writer == null) {
+                return false;
+            }
+            try {
+                return runWriteTransaction(conn -> {
+                    PreparedStatement stmt = conn.prepare("INSERT INTO meta (key, value) VALUES (?, ?) " +
+                            "ON CONFLICT(key) DO UPDATE SET value = excluded.value");
+                    stmt.setString(1, key);
+                    stmt.setString(2, value);
+                    stmt.executeUpdate();
+                    conn.getConnection().commit();
+                    return true;
+                });
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to store " + key + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * Receives the resident part of the claim data in lazy mode
+     */
+    public interface ClaimIndexSink {
+        void claim(int claimId, UUID ownerUUID, String world);
+        
+        void chunk(int claimId, int chunkX, int chunkZ);
+    }
+    
+    /**
+     * Stream claim owners and chunk ownership without building claim objects, for lazy mode
+     * @param sink Receives every claim, then every chunk
+     * @return Future completed once the scan is done, with false if it failed
+     */
+    public CompletableFuture<Boolean> scanClaimIndex(ClaimIndexSink sink) {
+        return CompletableFuture.supplyAsync(() -> {
+            // Claims will change without being loaded, so a snapshot can no longer be trusted
+            takeMeta(SNAPSHOT_TOKEN_KEY);
+            
+            CachedConnection conn = null;
+            try {
+                conn = borrowReader();
+                long start = System.currentTimeMillis();
+                int claims = 0;
+                int chunks = 0;
+                
+                try (ResultSet rs = conn.prepare("SELECT id, owner_uuid, world_id FROM claims ORDER BY created_at DESC").executeQuery()) {
+                    while (rs.next()) {
+                        sink.claim(rs.getInt(1), fromBytes(rs.getBytes(2)), worldName(rs.getInt(3)));
+                        claims++;
+                    }
+                }
+                try (ResultSet rs = conn.prepare("SELECT claim_id, chunk_key FROM claim_chunks").executeQuery()) {
+                    while (rs.next()) {
+                        long key = rs.getLong(2);
+                        sink.chunk(rs.getInt(1), chunkKeyX(key), chunkKeyZ(key));
+                        chunks++;
+                    }
+                }
+                
+                plugin.getLogger().info("Indexed " + claims + " claims with " + chunks + " chunks in "
+                        + (System.currentTimeMillis() - start) + "ms (lazy mode)");
+                return true;
+                
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to index claims: " + e.getMessage());
+                e.printStackTrace();
+                return false;
+            } finally {
+                if (conn != null) {
+                    returnReader(conn);
+                }
+            }
+        }, getReadExecutor());
+    }
+    
+    /**
+     * Load a single claim with its chunks, flags and members on the calling thread
+     * @param claimId The claim ID
+     * @return The claim, or null if it does not exist or could not be read
+     */
+    public Claim loadClaim(int claimId) {
+        CachedConnection conn = null;
+        try {
+            conn = borrowReader();
+            
+            Claim claim;
+            PreparedStatement stmt = conn.prepare("SELECT * FROM claims WHERE id = ?");
+            stmt.setInt(1, claimId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                claim = createClaimFromResultSet(rs);
+            }
+            
+            IntObjectHashMap<Claim> single = new IntObjectHashMap<>(1);
+            single.put(claimId, claim);
+            PreparedStatement chunks = conn.prepare("SELECT claim_id, chunk_key FROM claim_chunks WHERE claim_id = ?");
+            chunks.setInt(1, claimId);
+            loadChunks(single, chunks);
+            
+            PreparedStatement members = conn.prepare("SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members WHERE claim_id = ?");
+            members.setInt(1, claimId);
+            loadMembers(single, members);
+            
+            claim.clearDirty();
+            return claim;
+            
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to load claim " + claimId + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (conn != null) {
+                returnReader(conn);
+            }
+        }
+    }
+    
+    /**
+     * Find the claims of a player by name on the calling thread
+     * @param ownerName The owner's name, case-insensitive
+     * @return IDs of the player's claims
+     */
+    public List<Integer> findClaimIdsByOwnerName(String ownerName) {
+        List<Integer> claimIds = new ArrayList<>();
+        CachedConnection conn = null;
+        try {
+            conn = borrowReader();
+            PreparedStatement stmt = conn.prepare("SELECT id FROM claims WHERE owner_name = ? COLLATE NOCASE ORDER BY created_at DESC");
+            stmt.setString(1, ownerName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    claimIds.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to look up claims of " + ownerName + ": " + e.getMessage());
+        } finally {
+            if (conn != null) {
+                returnReader(conn);
+            }
+        }
+        return claimIds;
+    }
+    
+    private IntObjectHashMap<Claim> loadClaimRows(CachedConnection conn, List<Claim> claims) throws SQLException {
+        PreparedStatement stmt = conn.prepare("SELECT * FROM claims ORDER BY created_at DESC");
+        
+        IntObjectHashMap<Claim> claimsById = new IntObjectHashMap<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Claim claim = createClaimFromResultSet(rs);
+                claimsById.put(claim.getId(), claim);
+                claims.add(claim);
+            }
+        }
+        return claimsById;
+    }
+    
     private Claim createClaimFromResultSet(ResultSet rs) throws SQLException {
         Claim claim = new Claim(
-            UUID.fromString(rs.getString("owner_uuid")),
+            fromBytes(rs.getBytes("owner_uuid")),
             rs.getString("owner_name"),
-            rs.getString("world")
+            worldName(rs.getInt("world_id"))
         );
         
         claim.setId(rs.getInt("id"));
         claim.setName(rs.getString("name"));
+        claim.setFlagMask(storedFlagMask(rs.getLong("flags"), rs.getLong("flags_known")));
         claim.setCreatedAt(rs.getTimestamp("created_at"));
         claim.setLastAccessed(rs.getTimestamp("last_accessed"));
         
         return claim;
     }
     
-    private void loadClaimChunks(Claim claim, Connection conn) throws SQLException {
-        String sql = "SELECT chunk_x, chunk_z FROM claim_chunks WHERE claim_id = ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, claim.getId());
+    /**
+     * Attach chunk rows to their claims
+     * @param claimsById Claims to fill
+     * @param stmt Query returning claim_id, chunk_key ordered by claim_id
+     * @return Number of chunks attached
+     */
+    private int loadChunks(IntObjectHashMap<Claim> claimsById, PreparedStatement stmt) throws SQLException {
+        int loaded = 0;
+        int orphaned = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            // Rows arrive grouped by claim; add each group in one step, the chunk set is copied on every write
+            Claim current = null;
+            int currentId = 0;
+            List<ChunkLocation> chunks = new ArrayList<>();
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    ChunkLocation chunk = new ChunkLocation(
-                        claim.getWorld(),
-                        rs.getInt("chunk_x"),
-                        rs.getInt("chunk_z")
-                    );
-                    claim.addChunk(chunk);
+            while (rs.next()) {
+                int claimId = rs.getInt(1);
+                if (claimId != currentId) {
+                    if (current != null) {
+                        current.addChunks(chunks);
+                    }
+                    chunks.clear();
+                    currentId = claimId;
+                    current = claimsById.get(claimId);
+                }
+                
+                if (current == null) {
+                    orphaned++;
+                    continue;
                 }
+                long key = rs.getLong(2);
+                chunks.add(new ChunkLocation(current.getWorld(), chunkKeyX(key), chunkKeyZ(key)));
+                loaded++;
+            }
+            if (current != null) {
+                current.addChunks(chunks);
             }
         }
+        
+        if (orphaned > 0) {
+            plugin.getLogger().warning("Skipped " + orphaned + " chunks of deleted claims");
+        }
+        return loaded;
     }
     
-    private void loadClaimFlags(Claim claim, Connection conn) throws SQLException {
-        String sql = "SELECT flag_name, flag_value FROM claim_flags WHERE claim_id = ?";
-        
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, claim.getId());
+    /**
+     * Attach member rows to their claims
+     * @param claimsById Claims to fill
+     * @param stmt Query returning claim_id, player_uuid, player_name, trust_level, added_at ordered by claim_id
+     */
+    private void loadMembers(IntObjectHashMap<Claim> claimsById, PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            Claim current = null;
+            int currentId = 0;
+            List<ClaimMember> members = new ArrayList<>();
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    try {
-                        ClaimFlag flag = ClaimFlag.valueOf(rs.getString("flag_name"));
-                        boolean value = rs.getBoolean("flag_value");
-                        claim.setFlag(flag, value);
-                    } catch (IllegalArgumentException e) {
-                        // Flag no longer exists, skip it
-                        plugin.getLogger().warning("Unknown flag found in database: " + rs.getString("flag_name"));
+            while (rs.next()) {
+                int claimId = rs.getInt(1);
+                if (claimId != currentId) {
+                    if (current != null) {
+                        current.addMembers(members);
                     }
+                    members.clear();
+                    currentId = claimId;
+                    current = claimsById.get(claimId);
+                }
+                
+                if (current == null) {
+                    continue; // Claim was deleted
                 }
+                ClaimMember member = new ClaimMember(
+                    fromBytes(rs.getBytes(2)),
+                    rs.getString(3),
+                    rs.getString(4)
+                );
+                member.setAddedAt(rs.getTimestamp(5));
+                members.add(member);
+            }
+            if (current != null) {
+                current.addMembers(members);
             }
         }
     }
     
-    private void loadClaimMembers(Claim claim, Connection conn) throws SQLException {
-        String sql = "SELECT player_uuid, player_name, trust_level, added_at FROM claim_members WHERE claim_id = ?";
+    public CompletableFuture<Void> deleteClaim(Claim claim) {
+        claim.markDeleted();
+        if (claim.getId() != null) {
+            pendingSaves.remove(claim.getId());
+        }
         
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, claim.getId());
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    ClaimMember member = new ClaimMember(
-                        UUID.fromString(rs.getString("player_uuid")),
-                        rs.getString("player_name"),
-                        rs.getString("trust_level")
-                    );
-                    member.setAddedAt(rs.getTimestamp("added_at"));
-                    claim.addMember(member);
-                }
+        Runnable delete = () -> {
+            if (!deleteClaimSync(claim)) {
+                pendingDeletes.add(claim); // Retried by the next flush
             }
+        };
+        
+        if (writeExecutor == null) {
+            delete.run();
+            return CompletableFuture.completedFuture(null);
         }
+        return writeExecutor.submit(delete);
     }
     
-    public CompletableFuture<Void> deleteClaim(Claim claim) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = getConnection()) {
-                String sql = "DELETE FROM claims WHERE id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    private boolean deleteClaimSync(Claim claim) {
+        if (claim.getId() == null) {
+            return true; // Never reached the database
+        }
+        
+        synchronized (writeLock) {
+            if (writer == null) {
+                plugin.getLogger().warning("Database is closed, could not delete claim " + claim.getId());
+                return false;
+            }
+            
+            try {
+                runWriteTransaction(conn -> {
+                    PreparedStatement stmt = conn.prepare("DELETE FROM claims WHERE id = ?");
                     stmt.setInt(1, claim.getId());
                     stmt.executeUpdate();
-                }
+                    conn.getConnection().commit();
+                    return null;
+                });
+                return true;
             } catch (SQLException e) {
                 plugin.getLogger().severe("Failed to delete claim: " + e.getMessage());
                 e.printStackTrace();
+                return false;
             }
-        });
+        }
     }
     
-    public void closeConnection() {
-        // No persistent connection to close since we use connection per operation
-        plugin.getLogger().info("Database connection pool closed");
+    /**
+     * Finish queued writes and close all connections
+     * @return true if every queued write finished before the timeout
+     */
+    public boolean closeConnection() {
+        boolean drained = drainWrites();
+        
+        if (readExecutor != null) {
+            readExecutor.shutdown(); // Loads still running fail once their connection closes
+        }
+        
+        synchronized (writeLock) {
+            closeQuietly(writer);
+            writer = null;
+        }
+        
+        for (CachedConnection reader : allReaders) {
+            closeQuietly(reader);
+        }
+        allReaders.clear();
+        readers.clear();
+        
+        plugin.getLogger().info("Database connections closed");
+        return drained;
+    }
+    
+    /**
+     * Stop the writer thread once its queued writes finish; later writes run on the caller.
+     * Safe to call more than once.
+     * @return true if every queued write finished before the timeout
+     */
+    public boolean drainWrites() {
+        if (writeExecutor == null) {
+            return true;
+        }
+        
+        if (writeExecutor.isAccepting()) {
+            int queued = writeExecutor.getQueueDepth();
+            long timeout = plugin.getConfigManager().getDatabaseShutdownTimeout();
+            if (!writeExecutor.shutdown(timeout, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out after " + timeout + "s waiting for database writes, "
+                        + writeExecutor.getQueueDepth() + " writes were not saved");
+            } else if (queued > 0) {
+                plugin.getLogger().info("Finished " + queued + " queued database writes");
+            }
+        }
+        return writeExecutor.isDrained();
+    }
+    
+    private void closeQuietly(CachedConnection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to close database connection: " + e.getMessage());
+        }
     }
 }
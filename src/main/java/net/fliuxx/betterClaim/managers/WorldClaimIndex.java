@@ -0,0 +1,236 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.utils.LongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Claim index for a single world.
+ * Chunks are grouped into 4x4-chunk tiles, each a dense array of claim IDs, held in a hash map
+ * keyed by tile. A lookup is one hash probe and one array read: wilderness away from claims
+ * misses the probe, wilderness next to a claim reads a 0 from the tile.
+ *
+ * Coordinates are unbounded, so occupancy cannot be a dense array or bitmap over the world and
+ * has to be hashed somewhere; the tiles make it a single probe instead of a region probe plus a
+ * chunk probe. Tiles are kept small because many claims are one or two chunks: a tile costs
+ * about 120 bytes including its table slot, breaking even with a flat chunk table at about four
+ * claimed chunks per tile.
+ *
+ * Instances are mutated only while a {@link ClaimIndex.Builder} owns them; once published
+ * in a {@link ClaimIndex} they are never modified again and may be read from any thread.
+ *
+ * Every edit publishes a new version, so copying has to be cheap. The tile table is split into
+ * 256 shards, interleaved by tile coordinates so each holds an even share of any area. A
+ * {@link #copy()} only copies the array of shard references; the first change to a shard copies
+ * that shard's table, and the first change to a tile copies the tile. A single-chunk edit thus
+ * copies about 1/256 of the world's tiles table instead of all of it, and edits batched into
+ * one builder share their copies.
+ */
+public class WorldClaimIndex {
+
+    public static final int REGION_SHIFT = 5; // 32x32 chunks per region
+
+    private static final int TILE_SHIFT = 2; // 4x4 chunks per tile
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+    private static final int TILE_AREA = 1 << (TILE_SHIFT * 2);
+
+    // Tile layout: claim ID per chunk, then the claimed chunk count and the owner stamp
+    private static final int COUNT = TILE_AREA;
+    private static final int STAMP = TILE_AREA + 1;
+    private static final long TILE_BYTES = 16L + (TILE_AREA + 2) * Integer.BYTES;
+
+    private static final int SHARD_BITS = 4; // 16x16 interleaved shards
+    private static final int SHARD_MASK = (1 << SHARD_BITS) - 1;
+    private static final int SHARD_COUNT = 1 << (SHARD_BITS * 2);
+
+    private static final AtomicInteger STAMPS = new AtomicInteger();
+
+    // Null until a shard holds a tile
+    private final LongObjectHashMap<int[]>[] shards;
+    private final long[] ownedShards; // Bit set per shard copied or created by this instance
+    private final int stamp; // Tiles carrying this stamp were created by this instance
+    private int tileCount;
+    private int chunkCount;
+
+    @SuppressWarnings("unchecked")
+    public WorldClaimIndex() {
+        this.shards = new LongObjectHashMap[SHARD_COUNT];
+        this.ownedShards = new long[SHARD_COUNT / Long.SIZE];
+        this.stamp = STAMPS.incrementAndGet();
+    }
+
+    private WorldClaimIndex(WorldClaimIndex source) {
+        this.shards = source.shards.clone();
+        this.ownedShards = new long[SHARD_COUNT / Long.SIZE];
+        this.stamp = STAMPS.incrementAndGet();
+        this.tileCount = source.tileCount;
+        this.chunkCount = source.chunkCount;
+    }
+
+    /**
+     * Get the claim ID owning a chunk
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The claim ID, or 0 if the chunk is unclaimed
+     */
+    public int get(int chunkX, int chunkZ) {
+        LongObjectHashMap<int[]> shard = shards[shard(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT)];
+        if (shard == null) {
+            return 0;
+        }
+        int[] tile = shard.get(tileKey(chunkX, chunkZ));
+        return tile != null ? tile[slot(chunkX, chunkZ)] : 0;
+    }
+
+    /**
+     * Assign a chunk to a claim
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param claimId The owning claim ID
+     */
+    public void put(int chunkX, int chunkZ, int claimId) {
+        LongObjectHashMap<int[]> tiles = writableShard(shard(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT));
+        long key = tileKey(chunkX, chunkZ);
+        int[] tile = tiles.get(key);
+        if (tile == null) {
+            tile = new int[TILE_AREA + 2];
+            tile[STAMP] = stamp;
+            tiles.put(key, tile);
+            tileCount++;
+        } else {
+            tile = writableTile(tiles, key, tile);
+        }
+
+        int slot = slot(chunkX, chunkZ);
+        if (tile[slot] == 0) {
+            tile[COUNT]++;
+            chunkCount++;
+        }
+        tile[slot] = claimId;
+    }
+
+    /**
+     * Release a chunk from whatever claim owns it
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     */
+    public void remove(int chunkX, int chunkZ) {
+        int shard = shard(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT);
+        long key = tileKey(chunkX, chunkZ);
+        int[] tile = shards[shard] != null ? shards[shard].get(key) : null;
+        int slot = slot(chunkX, chunkZ);
+        if (tile == null || tile[slot] == 0) {
+            return;
+        }
+
+        LongObjectHashMap<int[]> tiles = writableShard(shard);
+        chunkCount--;
+        if (tile[COUNT] == 1) {
+            tiles.remove(key); // Last claimed chunk of the tile
+            tileCount--;
+            return;
+        }
+        tile = writableTile(tiles, key, tile);
+        tile[slot] = 0;
+        tile[COUNT]--;
+    }
+
+    /**
+     * Check if any chunk in a 32x32-chunk region is claimed
+     * @param regionX Region X coordinate (chunk X >> 5)
+     * @param regionZ Region Z coordinate (chunk Z >> 5)
+     * @return true if at least one chunk in the region is claimed
+     */
+    public boolean isAnyClaimedInRegion(int regionX, int regionZ) {
+        int tilesPerRegion = 1 << (REGION_SHIFT - TILE_SHIFT);
+        int firstTileX = regionX << (REGION_SHIFT - TILE_SHIFT);
+        int firstTileZ = regionZ << (REGION_SHIFT - TILE_SHIFT);
+        for (int tileZ = firstTileZ; tileZ < firstTileZ + tilesPerRegion; tileZ++) {
+            for (int tileX = firstTileX; tileX < firstTileX + tilesPerRegion; tileX++) {
+                LongObjectHashMap<int[]> shard = shards[shard(tileX, tileZ)];
+                if (shard != null && shard.get(ChunkLocation.pack(tileX, tileZ)) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public void clear() {
+        Arrays.fill(shards, null);
+        Arrays.fill(ownedShards, 0L);
+        tileCount = 0;
+        chunkCount = 0;
+    }
+
+    /**
+     * Create an index with the same contents, used to build the next version copy-on-write.
+     * Shards and tiles are shared until the copy changes them.
+     * @return A new index with the same contents
+     */
+    public WorldClaimIndex copy() {
+        return new WorldClaimIndex(this);
+    }
+
+    /**
+     * Approximate heap footprint in bytes; tiles shared with other versions are counted too
+     * @return Size of the tile table and tiles in bytes
+     */
+    public long memoryFootprint() {
+        long total = 16L + SHARD_COUNT * Integer.BYTES + tileCount * TILE_BYTES;
+        for (LongObjectHashMap<int[]> shard : shards) {
+            if (shard != null) {
+                total += shard.memoryFootprint();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get a shard table this instance may modify, copying it if it belongs to another version
+     */
+    private LongObjectHashMap<int[]> writableShard(int shard) {
+        long bit = 1L << (shard & (Long.SIZE - 1));
+        int word = shard / Long.SIZE;
+        if ((ownedShards[word] & bit) == 0) {
+            shards[shard] = shards[shard] != null ? shards[shard].copy() : new LongObjectHashMap<>();
+            ownedShards[word] |= bit;
+        }
+        return shards[shard];
+    }
+
+    /**
+     * Get a tile this instance may modify, copying it if it belongs to another version
+     */
+    private int[] writableTile(LongObjectHashMap<int[]> tiles, long key, int[] tile) {
+        if (tile[STAMP] == stamp) {
+            return tile;
+        }
+        int[] copy = tile.clone();
+        copy[STAMP] = stamp;
+        tiles.put(key, copy);
+        return copy;
+    }
+
+    private static int shard(int tileX, int tileZ) {
+        return ((tileZ & SHARD_MASK) << SHARD_BITS) | (tileX & SHARD_MASK);
+    }
+
+    private static long tileKey(int chunkX, int chunkZ) {
+        return ChunkLocation.pack(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT);
+    }
+
+    private static int slot(int chunkX, int chunkZ) {
+        return ((chunkZ & TILE_MASK) << TILE_SHIFT) | (chunkX & TILE_MASK);
+    }
+}
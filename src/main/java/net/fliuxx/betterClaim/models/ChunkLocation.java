@@ -47,6 +47,32 @@ public class ChunkLocation {
         this.z = z;
     }
     
+    /**
+     * Get the packed (x, z) key of this chunk, see {@link #pack(int, int)}
+     * @return Packed chunk coordinates
+     */
+    public long getKey() {
+        return pack(x, z);
+    }
+    
+    /**
+     * Pack chunk coordinates into a single long, x in the high 32 bits and z in the low 32 bits
+     * @param x Chunk X coordinate
+     * @param z Chunk Z coordinate
+     * @return Packed chunk key
+     */
+    public static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+    
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+    
+    public static int unpackZ(long key) {
+        return (int) key;
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
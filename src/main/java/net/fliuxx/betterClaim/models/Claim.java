@@ -3,33 +3,50 @@ package net.fliuxx.betterClaim.models;
 import java.sql.Timestamp;
 import java.util.*;
 
+/**
+ * A claimed area and its settings.
+ * Flags are held in a single bitmask and collections are copy-on-write: every mutation
+ * swaps in a new value under the claim's monitor, so readers on any thread (async saves,
+ * packet listeners) can use them without locking and never see a partially applied change.
+ */
 public class Claim {
     
-    private Integer id;
-    private UUID ownerUUID;
-    private String ownerName;
-    private String world;
-    private String name;
-    private Set<ChunkLocation> chunks;
-    private Set<ClaimMember> members;
-    private Map<ClaimFlag, Boolean> flags;
-    private Timestamp createdAt;
-    private Timestamp lastAccessed;
+    // Aspects of a claim that can be changed and need to be written to the database
+    public static final int DIRTY_METADATA = 1;
+    public static final int DIRTY_CHUNKS = 1 << 1;
+    public static final int DIRTY_FLAGS = 1 << 2;
+    public static final int DIRTY_MEMBERS = 1 << 3;
+    public static final int DIRTY_ALL = DIRTY_METADATA | DIRTY_CHUNKS | DIRTY_FLAGS | DIRTY_MEMBERS;
+    
+    private volatile Integer id;
+    private volatile UUID ownerUUID;
+    private volatile String ownerName;
+    private volatile String world;
+    private volatile String name;
+    private volatile Set<ChunkLocation> chunks;
+    private volatile Set<ClaimMember> members;
+    private volatile Map<UUID, ClaimMember> membersByUUID;
+    private volatile PermissionMatrix permissions; // Compiled lazily, reset when members change
+    private volatile long flagMask; // Bit per ClaimFlag, see ClaimFlag#getMask
+    private volatile Timestamp createdAt;
+    private volatile Timestamp lastAccessed;
+    private ClaimChanges changes; // Guarded by this
+    private volatile boolean deleted;
     
     public Claim(UUID ownerUUID, String ownerName, String world) {
         this.ownerUUID = ownerUUID;
         this.ownerName = ownerName;
         this.world = world;
-        this.chunks = new HashSet<>();
-        this.members = new HashSet<>();
-        this.flags = new EnumMap<>(ClaimFlag.class);
+        this.chunks = Collections.emptySet();
+        this.members = Collections.emptySet();
+        this.membersByUUID = Collections.emptyMap();
         this.createdAt = new Timestamp(System.currentTimeMillis());
         this.lastAccessed = new Timestamp(System.currentTimeMillis());
+        this.changes = new ClaimChanges();
+        this.changes.rewrite(DIRTY_ALL); // Not saved yet
         
         // Initialize with default flags
-        for (ClaimFlag flag : ClaimFlag.values()) {
-            this.flags.put(flag, flag.getDefaultValue());
-        }
+        this.flagMask = ClaimFlag.getDefaultMask();
     }
     
     // Getters and setters
@@ -53,8 +70,9 @@ public class Claim {
         return ownerName;
     }
     
-    public void setOwnerName(String ownerName) {
+    public synchronized void setOwnerName(String ownerName) {
         this.ownerName = ownerName;
+        changes.metadataChanged();
     }
     
     public String getWorld() {
@@ -69,20 +87,47 @@ public class Claim {
         return name != null ? name : ownerName + "'s Claim";
     }
     
-    public void setName(String name) {
+    public synchronized void setName(String name) {
         this.name = name;
+        changes.metadataChanged();
     }
     
+    /**
+     * Get the chunks of this claim
+     * @return Immutable snapshot of the claimed chunks
+     */
     public Set<ChunkLocation> getChunks() {
-        return new HashSet<>(chunks);
+        return chunks;
     }
     
-    public void addChunk(ChunkLocation chunk) {
-        this.chunks.add(chunk);
+    public synchronized void addChunk(ChunkLocation chunk) {
+        if (chunks.contains(chunk)) {
+            return;
+        }
+        Set<ChunkLocation> next = new HashSet<>(chunks);
+        next.add(chunk);
+        this.chunks = Collections.unmodifiableSet(next);
+        changes.chunkAdded(chunk);
+    }
+    
+    public synchronized void addChunks(Collection<ChunkLocation> added) {
+        Set<ChunkLocation> next = new HashSet<>(chunks);
+        for (ChunkLocation chunk : added) {
+            if (next.add(chunk)) {
+                changes.chunkAdded(chunk);
+            }
+        }
+        this.chunks = Collections.unmodifiableSet(next);
     }
     
-    public void removeChunk(ChunkLocation chunk) {
-        this.chunks.remove(chunk);
+    public synchronized void removeChunk(ChunkLocation chunk) {
+        if (!chunks.contains(chunk)) {
+            return;
+        }
+        Set<ChunkLocation> next = new HashSet<>(chunks);
+        next.remove(chunk);
+        this.chunks = Collections.unmodifiableSet(next);
+        changes.chunkRemoved(chunk);
     }
     
     public boolean hasChunk(ChunkLocation chunk) {
@@ -93,39 +138,135 @@ public class Claim {
         return chunks.size();
     }
     
+    /**
+     * Get the trusted members of this claim
+     * @return Immutable snapshot of the members
+     */
     public Set<ClaimMember> getMembers() {
-        return new HashSet<>(members);
+        return members;
+    }
+    
+    /**
+     * Add a member, replacing any existing entry for the same player
+     * @param member The member to add
+     */
+    public synchronized void addMember(ClaimMember member) {
+        Map<UUID, ClaimMember> next = new HashMap<>(membersByUUID);
+        next.put(member.getPlayerUUID(), member);
+        setMembers(next);
+        changes.memberSaved(member.getPlayerUUID());
+    }
+    
+    /**
+     * Add several members in one copy
+     * @param added The members to add, replacing existing entries for the same players
+     */
+    public synchronized void addMembers(Collection<ClaimMember> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        Map<UUID, ClaimMember> next = new HashMap<>(membersByUUID);
+        for (ClaimMember member : added) {
+            next.put(member.getPlayerUUID(), member);
+            changes.memberSaved(member.getPlayerUUID());
+        }
+        setMembers(next);
     }
     
-    public void addMember(ClaimMember member) {
-        this.members.add(member);
+    public synchronized void removeMember(UUID playerUUID) {
+        if (!membersByUUID.containsKey(playerUUID)) {
+            return;
+        }
+        Map<UUID, ClaimMember> next = new HashMap<>(membersByUUID);
+        next.remove(playerUUID);
+        setMembers(next);
+        changes.memberRemoved(playerUUID);
     }
     
-    public void removeMember(UUID playerUUID) {
-        this.members.removeIf(member -> member.getPlayerUUID().equals(playerUUID));
+    private void setMembers(Map<UUID, ClaimMember> next) {
+        this.membersByUUID = Collections.unmodifiableMap(next);
+        this.members = Collections.unmodifiableSet(new HashSet<>(next.values()));
+        this.permissions = null;
     }
     
     public ClaimMember getMember(UUID playerUUID) {
-        return members.stream()
-                .filter(member -> member.getPlayerUUID().equals(playerUUID))
-                .findFirst()
-                .orElse(null);
+        return membersByUUID.get(playerUUID);
+    }
+    
+    /**
+     * Get the flags a player is granted through their trust level in this claim.
+     * The UUID to mask table is compiled on first use and rebuilt whenever the members
+     * or the trust level definitions change, so a lookup is a single map probe.
+     * Trust level changes must go through {@link #addMember(ClaimMember)} to be seen here.
+     * @param playerUUID The player's UUID
+     * @param trustLevelMasks Compiled trust level masks from the config
+     * @return Bitmask of granted ClaimFlags, 0 if the player is not a member
+     */
+    public long getPermissionMask(UUID playerUUID, Map<String, Long> trustLevelMasks) {
+        PermissionMatrix matrix = permissions;
+        if (matrix == null || matrix.trustLevelMasks != trustLevelMasks) {
+            matrix = compilePermissions(trustLevelMasks);
+        }
+        
+        Long mask = matrix.masks.get(playerUUID);
+        return mask != null ? mask : 0L;
+    }
+    
+    private synchronized PermissionMatrix compilePermissions(Map<String, Long> trustLevelMasks) {
+        Map<UUID, Long> masks = new HashMap<>();
+        for (ClaimMember member : membersByUUID.values()) {
+            masks.put(member.getPlayerUUID(), trustLevelMasks.getOrDefault(member.getTrustLevel(), 0L));
+        }
+        
+        PermissionMatrix matrix = new PermissionMatrix(trustLevelMasks, masks);
+        this.permissions = matrix;
+        return matrix;
     }
     
     public boolean hasMember(UUID playerUUID) {
         return getMember(playerUUID) != null;
     }
     
+    /**
+     * Get the flags of this claim as a map.
+     * Prefer {@link #getFlag(ClaimFlag)} or {@link #getFlagMask()}, which do not allocate.
+     * @return A new map with the value of every flag
+     */
     public Map<ClaimFlag, Boolean> getFlags() {
-        return new EnumMap<>(flags);
+        long mask = flagMask;
+        Map<ClaimFlag, Boolean> flags = new EnumMap<>(ClaimFlag.class);
+        for (ClaimFlag flag : ClaimFlag.values()) {
+            flags.put(flag, (mask & flag.getMask()) != 0);
+        }
+        return flags;
     }
     
-    public void setFlag(ClaimFlag flag, boolean value) {
-        this.flags.put(flag, value);
+    public synchronized void setFlag(ClaimFlag flag, boolean value) {
+        long previous = flagMask;
+        if (value) {
+            this.flagMask = previous | flag.getMask();
+        } else {
+            this.flagMask = previous & ~flag.getMask();
+        }
+        changes.flagsChanged(previous ^ flagMask);
     }
     
     public boolean getFlag(ClaimFlag flag) {
-        return flags.getOrDefault(flag, flag.getDefaultValue());
+        return (flagMask & flag.getMask()) != 0;
+    }
+    
+    /**
+     * Get the state of all flags at once
+     * @return Bitmask with the bit of every enabled flag set
+     */
+    public long getFlagMask() {
+        return flagMask;
+    }
+    
+    public synchronized void setFlagMask(long flagMask) {
+        long previous = this.flagMask;
+        this.flagMask = flagMask;
+        changes.flagsChanged(previous ^ flagMask);
     }
     
     public Timestamp getCreatedAt() {
@@ -148,6 +289,55 @@ public class Claim {
         this.lastAccessed = new Timestamp(System.currentTimeMillis());
     }
     
+    /**
+     * Mark aspects of this claim to be written in full with the next save
+     * @param aspects Bitwise OR of the DIRTY_ constants
+     */
+    public synchronized void markDirty(int aspects) {
+        changes.rewrite(aspects);
+    }
+    
+    /**
+     * Get and reset the recorded changes, used by the writer right before it reads the claim.
+     * Changes made after this call are recorded in a fresh set and picked up by the next save.
+     * @return The changes since the last call
+     */
+    public synchronized ClaimChanges takeChanges() {
+        ClaimChanges taken = changes;
+        changes = new ClaimChanges();
+        return taken;
+    }
+    
+    public synchronized boolean isDirty() {
+        return !changes.isEmpty();
+    }
+    
+    public synchronized void clearDirty() {
+        changes = new ClaimChanges();
+    }
+    
+    /**
+     * Check if this claim has been deleted; pending saves of deleted claims are dropped
+     * @return true if the claim was deleted
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+    
+    public void markDeleted() {
+        this.deleted = true;
+    }
+    
+    private static final class PermissionMatrix {
+        private final Map<String, Long> trustLevelMasks;
+        private final Map<UUID, Long> masks;
+        
+        private PermissionMatrix(Map<String, Long> trustLevelMasks, Map<UUID, Long> masks) {
+            this.trustLevelMasks = trustLevelMasks;
+            this.masks = masks;
+        }
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -0,0 +1,108 @@
+package net.fliuxx.betterClaim.models;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Rows of a claim that changed since it was last written to the database.
+ * Claim records every mutation here so the writer can persist only the delta. Adding
+ * and removing the same chunk or member before a save cancel out.
+ *
+ * Aspects marked for rewrite are written in full instead, which is used for claims that
+ * were never saved and to recover after a failed transaction.
+ *
+ * Not thread-safe; Claim guards its instance with its own monitor and hands it over
+ * to the writer as a whole.
+ */
+public class ClaimChanges {
+
+    private int aspects;
+    private int rewriteAspects;
+    private final Set<ChunkLocation> addedChunks = new HashSet<>();
+    private final Set<ChunkLocation> removedChunks = new HashSet<>();
+    private final Set<UUID> savedMembers = new HashSet<>();
+    private final Set<UUID> removedMembers = new HashSet<>();
+
+    public void metadataChanged() {
+        aspects |= Claim.DIRTY_METADATA;
+    }
+
+    public void chunkAdded(ChunkLocation chunk) {
+        aspects |= Claim.DIRTY_CHUNKS;
+        if (!removedChunks.remove(chunk)) {
+            addedChunks.add(chunk);
+        }
+    }
+
+    public void chunkRemoved(ChunkLocation chunk) {
+        aspects |= Claim.DIRTY_CHUNKS;
+        if (!addedChunks.remove(chunk)) {
+            removedChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Record changed flags
+     * @param flagBits Bits of the flags whose value changed
+     */
+    public void flagsChanged(long flagBits) {
+        if (flagBits != 0) {
+            aspects |= Claim.DIRTY_FLAGS;
+        }
+    }
+
+    public void memberSaved(UUID playerUUID) {
+        aspects |= Claim.DIRTY_MEMBERS;
+        removedMembers.remove(playerUUID);
+        savedMembers.add(playerUUID);
+    }
+
+    public void memberRemoved(UUID playerUUID) {
+        aspects |= Claim.DIRTY_MEMBERS;
+        savedMembers.remove(playerUUID);
+        removedMembers.add(playerUUID);
+    }
+
+    /**
+     * Mark aspects to be written in full rather than as a delta
+     * @param aspects Bitwise OR of the Claim.DIRTY_ constants
+     */
+    public void rewrite(int aspects) {
+        this.aspects |= aspects;
+        this.rewriteAspects |= aspects;
+    }
+
+    /**
+     * Get the aspects that changed
+     * @return Bitwise OR of the Claim.DIRTY_ constants
+     */
+    public int getAspects() {
+        return aspects;
+    }
+
+    public boolean isRewrite(int aspect) {
+        return (rewriteAspects & aspect) != 0;
+    }
+
+    public boolean isEmpty() {
+        return aspects == 0;
+    }
+
+    public Set<ChunkLocation> getAddedChunks() {
+        return Collections.unmodifiableSet(addedChunks);
+    }
+
+    public Set<ChunkLocation> getRemovedChunks() {
+        return Collections.unmodifiableSet(removedChunks);
+    }
+
+    public Set<UUID> getSavedMembers() {
+        return Collections.unmodifiableSet(savedMembers);
+    }
+
+    public Set<UUID> getRemovedMembers() {
+        return Collections.unmodifiableSet(removedMembers);
+    }
+}
@@ -23,11 +23,27 @@ public enum ClaimFlag {
     private final boolean defaultValue;
     private final String displayName;
     private final String description;
+    private final long mask;
+    private final String configKey;
+    
+    private static final long DEFAULT_MASK;
+    
+    static {
+        long mask = 0L;
+        for (ClaimFlag flag : values()) {
+            if (flag.defaultValue) {
+                mask |= flag.mask;
+            }
+        }
+        DEFAULT_MASK = mask;
+    }
     
     ClaimFlag(boolean defaultValue, String displayName, String description) {
         this.defaultValue = defaultValue;
         this.displayName = displayName;
         this.description = description;
+        this.mask = 1L << ordinal();
+        this.configKey = name().toLowerCase().replace('_', '-');
     }
     
     public boolean getDefaultValue() {
@@ -42,6 +58,31 @@ public enum ClaimFlag {
         return description;
     }
     
+    /**
+     * Get the bit representing this flag in a permission mask.
+     * The mask is also how flags are stored, so new flags must be added at the end.
+     * @return A long with only this flag's bit set
+     */
+    public long getMask() {
+        return mask;
+    }
+    
+    /**
+     * Get the name used for this flag in config files, e.g. "block-break"
+     * @return The config key
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+    
+    /**
+     * Get the mask of all flags that are enabled by default
+     * @return Bitmask of the built-in default values
+     */
+    public static long getDefaultMask() {
+        return DEFAULT_MASK;
+    }
+    
     public static ClaimFlag fromString(String name) {
         try {
             return valueOf(name.toUpperCase().replace('-', '_'));
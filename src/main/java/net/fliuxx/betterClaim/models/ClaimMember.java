@@ -6,10 +6,10 @@ import java.util.UUID;
 
 public class ClaimMember {
     
-    private UUID playerUUID;
-    private String playerName;
-    private String trustLevel;
-    private Timestamp addedAt;
+    private volatile UUID playerUUID;
+    private volatile String playerName;
+    private volatile String trustLevel;
+    private volatile Timestamp addedAt;
     
     public ClaimMember(UUID playerUUID, String playerName, String trustLevel) {
         this.playerUUID = playerUUID;
@@ -0,0 +1,131 @@
+package net.fliuxx.betterClaim.models;
+
+import org.bukkit.World;
+
+import java.util.UUID;
+
+/**
+ * Per-player state kept by the protection listener while the player is online.
+ * Only accessed from the main thread.
+ */
+public class PlayerSession {
+
+    private final UUID playerUUID;
+
+    // Last chunk the player was seen in and the claim covering it (0 for wilderness)
+    private World world;
+    private int chunkX;
+    private int chunkZ;
+    private int currentClaimId;
+    private long lastEnterNotificationAt;
+
+    // Denial throttling, indexed by ClaimFlag ordinal
+    private final long[] lastDenialAt;
+    private final long[] lastSummaryAt;
+    private final int[] suppressedDenials;
+
+    public PlayerSession(UUID playerUUID) {
+        this.playerUUID = playerUUID;
+
+        int flags = ClaimFlag.values().length;
+        this.lastDenialAt = new long[flags];
+        this.lastSummaryAt = new long[flags];
+        this.suppressedDenials = new int[flags];
+    }
+
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+
+    /**
+     * Check if the player is still in the chunk recorded by the last {@link #moveTo}
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return true if nothing changed since the last recorded position
+     */
+    public boolean isInChunk(World world, int chunkX, int chunkZ) {
+        return this.chunkX == chunkX && this.chunkZ == chunkZ && this.world == world;
+    }
+
+    public boolean hasPosition() {
+        return world != null;
+    }
+
+    /**
+     * Record the chunk the player is now in
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param claimId ID of the claim covering the chunk, or 0 if unclaimed
+     */
+    public void moveTo(World world, int chunkX, int chunkZ, int claimId) {
+        this.world = world;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.currentClaimId = claimId;
+    }
+
+    public int getCurrentClaimId() {
+        return currentClaimId;
+    }
+
+    /**
+     * Check if a claim enter message may be shown, and mark it as shown if so
+     * @param now Current time in milliseconds
+     * @param cooldown Minimum time between enter messages in milliseconds
+     * @return true if the message should be sent
+     */
+    public boolean tryEnterNotification(long now, long cooldown) {
+        if (now - lastEnterNotificationAt < cooldown) {
+            return false;
+        }
+        lastEnterNotificationAt = now;
+        return true;
+    }
+
+    /**
+     * Record a denial and decide whether the full message should be sent.
+     * The first denial of a window goes through; repeats inside the window are counted instead.
+     * @param flag The flag that caused the denial
+     * @param now Current time in milliseconds
+     * @param window Suppression window in milliseconds
+     * @return true if the denial message should be sent
+     */
+    public boolean recordDenial(ClaimFlag flag, long now, long window) {
+        int index = flag.ordinal();
+        if (now - lastDenialAt[index] >= window) {
+            lastDenialAt[index] = now;
+            suppressedDenials[index] = 0;
+            return true;
+        }
+
+        suppressedDenials[index]++;
+        return false;
+    }
+
+    /**
+     * Get how many denials were suppressed in the current window
+     * @param flag The flag
+     * @return Number of suppressed repeats
+     */
+    public int getSuppressedDenials(ClaimFlag flag) {
+        return suppressedDenials[flag.ordinal()];
+    }
+
+    /**
+     * Check if a repeat summary may be shown again, and mark it as shown if so
+     * @param flag The flag
+     * @param now Current time in milliseconds
+     * @param interval Minimum time between summaries in milliseconds
+     * @return true if a summary should be sent now
+     */
+    public boolean shouldSendSummary(ClaimFlag flag, long now, long interval) {
+        int index = flag.ordinal();
+        if (now - lastSummaryAt[index] >= interval) {
+            lastSummaryAt[index] = now;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package net.fliuxx.betterClaim.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A long-lived JDBC connection that keeps its prepared statements.
+ * Statements are prepared on first use and reused for the lifetime of the connection,
+ * so callers must not close them; only close the ResultSets they produce.
+ *
+ * This class is not thread-safe, a connection must be used by one thread at a time.
+ */
+public class CachedConnection implements AutoCloseable {
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    public CachedConnection(Connection connection) {
+        this.connection = connection;
+        this.statements = new HashMap<>();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get the cached statement for a query, preparing it on first use
+     * @param sql The SQL query
+     * @return The prepared statement, owned by this connection
+     * @throws SQLException If the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Get the cached statement for an insert that returns generated keys
+     * @param sql The SQL insert
+     * @return The prepared statement, owned by this connection
+     * @throws SQLException If the statement cannot be prepared
+     */
+    public PreparedStatement prepareInsert(String sql) throws SQLException {
+        String key = "keys:" + sql;
+        PreparedStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            statements.put(key, statement);
+        }
+        return statement;
+    }
+
+    public int getCachedStatementCount() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Closing the connection below releases it anyway
+            }
+        }
+        statements.clear();
+        connection.close();
+    }
+}
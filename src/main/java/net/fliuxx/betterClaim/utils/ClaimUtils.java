@@ -1,7 +1,6 @@
 package net.fliuxx.betterClaim.utils;
 
 import net.fliuxx.betterClaim.models.ChunkLocation;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
@@ -179,8 +178,7 @@ public class ClaimUtils {
             return false;
         }
         
-        Chunk locationChunk = location.getChunk();
-        return locationChunk.getX() == chunk.getX() && locationChunk.getZ() == chunk.getZ();
+        return (location.getBlockX() >> 4) == chunk.getX() && (location.getBlockZ() >> 4) == chunk.getZ();
     }
     
     /**
@@ -189,7 +187,7 @@ public class ClaimUtils {
      * @return The chunk location containing the given location
      */
     public static ChunkLocation locationToChunk(Location location) {
-        return new ChunkLocation(location.getChunk());
+        return new ChunkLocation(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
     }
     
     /**
@@ -220,8 +218,11 @@ public class ClaimUtils {
     public static List<Player> getPlayersInClaim(Set<ChunkLocation> chunks, World world) {
         List<Player> playersInClaim = new ArrayList<>();
         
+        Location location = new Location(world, 0, 0, 0);
+        
         for (Player player : world.getPlayers()) {
-            ChunkLocation playerChunk = new ChunkLocation(player.getLocation().getChunk());
+            player.getLocation(location);
+            ChunkLocation playerChunk = new ChunkLocation(world.getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
             if (chunks.contains(playerChunk)) {
                 playersInClaim.add(player);
             }
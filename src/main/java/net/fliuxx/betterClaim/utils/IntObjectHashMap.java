@@ -0,0 +1,224 @@
+package net.fliuxx.betterClaim.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing hash map from primitive int keys to object values.
+ * Lookups never box the key, which keeps claim ID resolution allocation-free.
+ *
+ * The key 0 is reserved and cannot be stored; null values are not permitted.
+ * This class is not thread-safe.
+ *
+ * @param <V> The value type
+ */
+public class IntObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public IntObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private IntObjectHashMap(IntObjectHashMap<V> source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.mask = source.mask;
+        this.size = source.size;
+        this.resizeThreshold = source.resizeThreshold;
+    }
+
+    /**
+     * Get the value mapped to a key
+     * @param key The key to look up
+     * @return The mapped value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int[] keys = this.keys;
+        int mask = this.mask;
+
+        int slot = mix(key) & mask;
+        int current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value
+     * @param key The key, must not be 0
+     * @param value The value, must not be null
+     * @return The previous value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 is reserved as the empty key");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+
+        int slot = mix(key) & mask;
+        int current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key from the map
+     * @param key The key to remove
+     * @return The removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == 0) {
+            return null;
+        }
+
+        int slot = mix(key) & mask;
+        int current;
+        while ((current = keys[slot]) != 0) {
+            if (current == key) {
+                V previous = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Create an independent copy of this map, values are shared
+     * @return A new map with the same mappings
+     */
+    public IntObjectHashMap<V> copy() {
+        return new IntObjectHashMap<>(this);
+    }
+
+    /**
+     * Copy the values of this map into a new list
+     * @return List of all values, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                result.add((V) values[i]);
+            }
+        }
+        return result;
+    }
+
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int current = slot;
+
+        while (true) {
+            current = (current + 1) & mask;
+            if (keys[current] == 0) {
+                break;
+            }
+
+            int ideal = mix(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
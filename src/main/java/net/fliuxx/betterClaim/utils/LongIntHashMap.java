@@ -0,0 +1,216 @@
+package net.fliuxx.betterClaim.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive int values.
+ * Used for the chunk to claim ID index, where boxing a key object per chunk
+ * would cost far more memory than the data itself.
+ *
+ * A value of 0 is reserved and means "no mapping", so stored values must be non-zero.
+ * This class is not thread-safe.
+ */
+public class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private LongIntHashMap(LongIntHashMap source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.mask = source.mask;
+        this.size = source.size;
+        this.resizeThreshold = source.resizeThreshold;
+    }
+
+    /**
+     * Get the value mapped to a key
+     * @param key The key to look up
+     * @return The mapped value, or 0 if the key is not present
+     */
+    public int get(long key) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        int mask = this.mask;
+
+        int slot = mix(key) & mask;
+        int value;
+        while ((value = values[slot]) != 0) {
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Check if a key is present in the map
+     * @param key The key to check
+     * @return true if the key is mapped to a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    /**
+     * Map a key to a value
+     * @param key The key
+     * @param value The value, must not be 0
+     * @return The previous value, or 0 if the key was not present
+     */
+    public int put(long key, int value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 is reserved as the empty value");
+        }
+
+        int slot = mix(key) & mask;
+        int existing;
+        while ((existing = values[slot]) != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Remove a key from the map
+     * @param key The key to remove
+     * @return The removed value, or 0 if the key was not present
+     */
+    public int remove(long key) {
+        int slot = mix(key) & mask;
+        int existing;
+        while ((existing = values[slot]) != 0) {
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Create an independent copy of this map
+     * @return A new map with the same mappings
+     */
+    public LongIntHashMap copy() {
+        return new LongIntHashMap(this);
+    }
+
+    /**
+     * Approximate heap footprint of the backing arrays in bytes
+     * @return Size of the key and value tables in bytes
+     */
+    public long memoryFootprint() {
+        return (long) keys.length * Long.BYTES + (long) values.length * Integer.BYTES;
+    }
+
+    /**
+     * Close the gap left by a removed slot so that linear probing chains stay intact
+     * @param slot The slot that was emptied
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int current = slot;
+
+        while (true) {
+            current = (current + 1) & mask;
+            if (values[current] == 0) {
+                break;
+            }
+
+            int ideal = mix(keys[current]) & mask;
+            // Move the entry back if the gap lies cyclically between its ideal slot and its current slot
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+
+        values[gap] = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spread the bits of a packed key so that neighbouring chunks do not cluster
+     * @param key The key to hash
+     * @return Well-mixed hash of the key
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
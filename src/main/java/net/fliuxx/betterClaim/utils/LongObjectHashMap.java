@@ -0,0 +1,201 @@
+package net.fliuxx.betterClaim.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to object values.
+ * Used for the tiles of the chunk index, keyed by packed tile coordinates.
+ *
+ * Any key may be stored; null values are not permitted and mark empty slots.
+ * This class is not thread-safe.
+ *
+ * @param <V> The value type
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private LongObjectHashMap(LongObjectHashMap<V> source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.mask = source.mask;
+        this.size = source.size;
+        this.resizeThreshold = source.resizeThreshold;
+    }
+
+    /**
+     * Get the value mapped to a key
+     * @param key The key to look up
+     * @return The mapped value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = this.mask;
+
+        int slot = mix(key) & mask;
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Map a key to a value
+     * @param key The key
+     * @param value The value, must not be null
+     * @return The previous value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not permitted");
+        }
+
+        int slot = mix(key) & mask;
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key from the map
+     * @param key The key to remove
+     * @return The removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = mix(key) & mask;
+        Object existing;
+        while ((existing = values[slot]) != null) {
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return (V) existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Create an independent copy of this map, values are shared
+     * @return A new map with the same mappings
+     */
+    public LongObjectHashMap<V> copy() {
+        return new LongObjectHashMap<>(this);
+    }
+
+    /**
+     * Approximate heap footprint of the backing arrays in bytes, not counting the values
+     * @return Size of the key and reference tables in bytes
+     */
+    public long memoryFootprint() {
+        return (long) keys.length * Long.BYTES + (long) values.length * Integer.BYTES; // Compressed references
+    }
+
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int current = slot;
+
+        while (true) {
+            current = (current + 1) & mask;
+            if (values[current] == null) {
+                break;
+            }
+
+            int ideal = mix(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+
+        values[gap] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        allocate(newCapacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
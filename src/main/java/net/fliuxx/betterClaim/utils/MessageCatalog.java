@@ -0,0 +1,91 @@
+package net.fliuxx.betterClaim.utils;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of compiled messages from messages.yml.
+ * Every string entry is compiled into a {@link MessageTemplate} twice, once on its own and
+ * once with the prefix in front, so sending a message never touches YAML or regex code.
+ * ConfigManager builds a new catalog on every load and swaps it in as a whole.
+ */
+public final class MessageCatalog {
+
+    private static final String PREFIX_PATH = "prefix";
+
+    private final Map<String, MessageTemplate> templates;
+    private final Map<String, MessageTemplate> prefixedTemplates;
+    private final String prefix;
+
+    private MessageCatalog(Map<String, MessageTemplate> templates, Map<String, MessageTemplate> prefixedTemplates, String prefix) {
+        this.templates = templates;
+        this.prefixedTemplates = prefixedTemplates;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Compile all string messages of a messages file
+     * @param messages The loaded messages file
+     * @return The compiled catalog
+     */
+    public static MessageCatalog compile(ConfigurationSection messages) {
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        Map<String, MessageTemplate> prefixedTemplates = new HashMap<>();
+        String rawPrefix = messages.getString(PREFIX_PATH, "");
+
+        for (String path : messages.getKeys(true)) {
+            if (!messages.isString(path)) {
+                continue; // Sections and lists
+            }
+
+            String raw = messages.getString(path);
+            templates.put(path, MessageTemplate.compile(raw));
+            prefixedTemplates.put(path, MessageTemplate.compile(rawPrefix + raw));
+        }
+
+        return new MessageCatalog(
+            Collections.unmodifiableMap(templates),
+            Collections.unmodifiableMap(prefixedTemplates),
+            MessageUtils.colorize(rawPrefix)
+        );
+    }
+
+    /**
+     * Get a compiled message
+     * @param path The message path
+     * @return The template, or a "message not found" template if the path is missing
+     */
+    public MessageTemplate get(String path) {
+        MessageTemplate template = templates.get(path);
+        return template != null ? template : missing(path);
+    }
+
+    /**
+     * Get a compiled message with the prefix in front
+     * @param path The message path
+     * @return The template, or a "message not found" template if the path is missing
+     */
+    public MessageTemplate getPrefixed(String path) {
+        MessageTemplate template = prefixedTemplates.get(path);
+        return template != null ? template : missing(path);
+    }
+
+    /**
+     * Get the colorized message prefix
+     * @return The prefix
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    private static MessageTemplate missing(String path) {
+        return MessageTemplate.compile("&cMessage not found: " + path);
+    }
+}
@@ -0,0 +1,182 @@
+package net.fliuxx.betterClaim.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message compiled once at load time.
+ * Color codes are translated up front and the text is split around its {placeholder}
+ * slots, so formatting only concatenates the literal parts with the slot values.
+ * Messages without placeholders keep their final String and Adventure Component.
+ */
+public final class MessageTemplate {
+
+    private final String[] literals; // Text around the slots, always slots.length + 1 entries
+    private final int[] slots;       // Index into names for every slot, in order of appearance
+    private final String[] names;    // Distinct placeholder names
+    private final String text;       // Whole message with placeholders left in place
+    private final int literalLength;
+    private volatile Component component;
+
+    private MessageTemplate(String[] literals, int[] slots, String[] names, String text) {
+        this.literals = literals;
+        this.slots = slots;
+        this.names = names;
+        this.text = text;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compile a raw message from the messages file
+     * @param raw The message with & color codes and {placeholders}
+     * @return The compiled template
+     */
+    public static MessageTemplate compile(String raw) {
+        String colorized = MessageUtils.colorize(raw);
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder pending = new StringBuilder();
+
+        int i = 0;
+        while (i < colorized.length()) {
+            char c = colorized.charAt(i);
+            if (c == '{') {
+                int close = colorized.indexOf('}', i + 1);
+                String name = close != -1 ? colorized.substring(i + 1, close) : "";
+                if (isPlaceholderName(name)) {
+                    int index = names.indexOf(name);
+                    if (index == -1) {
+                        index = names.size();
+                        names.add(name);
+                    }
+
+                    literals.add(pending.toString());
+                    slots.add(index);
+                    pending.setLength(0);
+                    i = close + 1;
+                    continue;
+                }
+            }
+            pending.append(c);
+            i++;
+        }
+        literals.add(pending.toString());
+
+        int[] slotArray = new int[slots.size()];
+        for (int j = 0; j < slotArray.length; j++) {
+            slotArray[j] = slots.get(j);
+        }
+
+        return new MessageTemplate(literals.toArray(new String[0]), slotArray, names.toArray(new String[0]), colorized);
+    }
+
+    /**
+     * Check if this message has no placeholders
+     * @return true if the message text never changes
+     */
+    public boolean isStatic() {
+        return slots.length == 0;
+    }
+
+    /**
+     * Get the distinct placeholder names, in the order expected by {@link #format(String...)}
+     * @return Copy of the placeholder names
+     */
+    public String[] getPlaceholders() {
+        return names.clone();
+    }
+
+    /**
+     * Get the colorized message with placeholders left unresolved
+     * @return The message text
+     */
+    public String format() {
+        return text;
+    }
+
+    /**
+     * Fill the placeholders by name
+     * @param placeholders Placeholder name to value, missing names are left as-is
+     * @return The formatted message
+     */
+    public String format(Map<String, String> placeholders) {
+        if (slots.length == 0 || placeholders == null) {
+            return text;
+        }
+
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = placeholders.get(names[i]);
+        }
+        return render(values);
+    }
+
+    /**
+     * Fill the placeholders by index
+     * @param values One value per entry of {@link #getPlaceholders()}, null leaves a slot as-is
+     * @return The formatted message
+     */
+    public String format(String... values) {
+        if (slots.length == 0) {
+            return text;
+        }
+        return render(values);
+    }
+
+    /**
+     * Get the message as an Adventure Component.
+     * Static messages are deserialized once and reused.
+     * @return The message component
+     */
+    public Component toComponent() {
+        Component cached = component;
+        if (cached == null) {
+            cached = LegacyComponentSerializer.legacySection().deserialize(text);
+            if (isStatic()) {
+                component = cached;
+            }
+        }
+        return cached;
+    }
+
+    private String render(String[] values) {
+        StringBuilder builder = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+
+            int index = slots[i];
+            String value = index < values.length ? values[index] : null;
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('{').append(names[index]).append('}');
+            }
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package net.fliuxx.betterClaim.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs database writes one at a time on a dedicated thread, in submission order.
+ * Because there is a single worker, writes for the same claim can never overtake each other.
+ *
+ * The queue is bounded: when it is full the submitting thread waits for a free slot,
+ * which slows producers down instead of letting the backlog grow without limit.
+ * Waits are counted so they show up in the stats.
+ */
+public class SerialWriteExecutor {
+
+    private final Logger logger;
+    private final BlockingQueue<Runnable> queue;
+    private final int capacity;
+    private final Thread worker;
+    private volatile boolean accepting;
+
+    // Metrics
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong stallNanos = new AtomicLong();
+
+    public SerialWriteExecutor(String threadName, int capacity, Logger logger) {
+        this.logger = logger;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.accepting = true;
+
+        this.worker = new Thread(this::runLoop, threadName);
+        this.worker.setDaemon(true); // Drained explicitly by shutdown()
+        this.worker.start();
+    }
+
+    /**
+     * Queue a write
+     * @param write The write to run on the writer thread
+     * @return Future completed with the write's result
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(write.get());
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Database write failed", t);
+                future.completeExceptionally(t);
+            } finally {
+                completed.incrementAndGet();
+            }
+        };
+
+        if (!accepting || !enqueue(task)) {
+            task.run(); // Shut down or interrupted, run it here rather than lose it
+        } else if (!worker.isAlive()) {
+            drainHere(); // Raced with shutdown, the worker is already gone
+        }
+        return future;
+    }
+
+    public CompletableFuture<Void> submit(Runnable write) {
+        return submit(() -> {
+            write.run();
+            return null;
+        });
+    }
+
+    private boolean enqueue(Runnable task) {
+        if (!queue.offer(task)) {
+            // Full: apply backpressure to the caller
+            stalls.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                stallNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        highWaterMark.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    private void runLoop() {
+        while (accepting || !queue.isEmpty()) {
+            try {
+                Runnable task = queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void drainHere() {
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Stop accepting new writes and wait for the queued ones to finish.
+     * Writes submitted afterwards run on the submitting thread.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return true if every queued write finished in time
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        accepting = false;
+        try {
+            worker.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (worker.isAlive()) {
+            worker.interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    /**
+     * Check if the calling thread is the writer thread
+     * @return true when called from a write running on this executor
+     */
+    public boolean isWorkerThread() {
+        return Thread.currentThread() == worker;
+    }
+
+    /**
+     * Check if the executor was shut down and finished every queued write
+     * @return true once nothing is left to run
+     */
+    public boolean isDrained() {
+        return !accepting && !worker.isAlive() && queue.isEmpty();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Get how many submissions had to wait for a free queue slot
+     * @return Number of stalled submissions
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    public long getStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stallNanos.get());
+    }
+}
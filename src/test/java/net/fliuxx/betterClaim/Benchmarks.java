@@ -0,0 +1,72 @@
+package net.fliuxx.betterClaim;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Helpers for the benchmark tests, run with {@code ./gradlew benchmark}.
+ * Timings are plain wall-clock loops after a warmup; they are meant for before/after
+ * comparisons on one machine, not as absolute figures.
+ */
+public final class Benchmarks {
+
+    public static final String TAG = "benchmark";
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    // Keeps results alive so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Time an operation, printing and returning the best average over the measured rounds
+     * @param name Label for the output
+     * @param operations Number of operations one call of the body performs
+     * @param body The measured work, returning any value derived from its results
+     * @return Nanoseconds per operation
+     */
+    public static double measure(String name, long operations, LongSupplier body) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += body.getAsLong();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += body.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double perOperation = (double) best / operations;
+        report(name, String.format(Locale.ROOT, "%,.1f ns/op", perOperation));
+        return perOperation;
+    }
+
+    /**
+     * Heap currently in use, after asking for a full collection
+     * @return Used heap in bytes
+     */
+    public static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void report(String name, String result) {
+        System.out.printf(Locale.ROOT, "[benchmark] %-48s %s%n", name, result);
+    }
+
+    public static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,124 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.managers.ClaimManager;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Filtering the block lists of a 500-block TNT stack detonating on a claim border: a column of
+ * TNT on the line between a claim that denies explosions and the wilderness, each explosion
+ * taking out a sphere of blocks across both. Compared with looking up the claim of every block
+ * and removing protected blocks one at a time.
+ */
+@Tag(Benchmarks.TAG)
+class ExplosionBenchmark {
+
+    private static final int STACK = 500;
+    private static final int RADIUS = 3;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void tntStack() {
+        World world = TestPlugin.world("world");
+
+        // Claim on chunks 0..1 in x, the stack stands on its western edge at x = 0
+        Claim claim = TestPlugin.claim(1, "world", 0, 0, 2);
+        claim.setFlag(ClaimFlag.EXPLOSIONS, false);
+        BetterClaim plugin = TestPlugin.withClaims(folder, List.of(claim));
+        ClaimManager claimManager = plugin.getClaimManager();
+        EnvironmentProtectionListener listener = new EnvironmentProtectionListener(plugin);
+        Entity tnt = TestPlugin.entity(world, EntityType.PRIMED_TNT);
+
+        List<List<Block>> explosions = new ArrayList<>(STACK);
+        Location[] centres = new Location[STACK];
+        int blocks = 0;
+        for (int i = 0; i < STACK; i++) {
+            int y = -64 + i;
+            List<Block> sphere = new ArrayList<>();
+            for (int dx = -RADIUS; dx <= RADIUS; dx++) {
+                for (int dy = -RADIUS; dy <= RADIUS; dy++) {
+                    for (int dz = -RADIUS; dz <= RADIUS; dz++) {
+                        if (dx * dx + dy * dy + dz * dz <= RADIUS * RADIUS) {
+                            sphere.add(TestPlugin.block(world, dx, y + dy, 8 + dz, dx == 0 && dz == 0 ? Material.TNT : Material.STONE));
+                        }
+                    }
+                }
+            }
+            explosions.add(sphere);
+            centres[i] = new Location(world, 0, y, 8);
+            blocks += sphere.size();
+        }
+        Benchmarks.report("blocks in the stack's explosions", String.valueOf(blocks));
+
+        // Both filters must keep the same blocks
+        int kept = 0;
+        for (int i = 0; i < STACK; i++) {
+            List<Block> filtered = new ArrayList<>(explosions.get(i));
+            listener.onEntityExplode(new EntityExplodeEvent(tnt, centres[i], filtered, 1.0f));
+            List<Block> expected = new ArrayList<>(explosions.get(i));
+            filterPerBlock(claimManager, world, expected);
+            assertEquals(expected, filtered, "Blocks left by explosion " + i);
+            kept += filtered.size();
+        }
+        Benchmarks.report("blocks left to destroy", kept + " of " + blocks);
+
+        Benchmarks.measure("copying the block lists only (baseline)", STACK, () -> {
+            long size = 0;
+            for (int i = 0; i < STACK; i++) {
+                size += new EntityExplodeEvent(tnt, centres[i], new ArrayList<>(explosions.get(i)), 1.0f).blockList().size();
+            }
+            return size;
+        });
+        Benchmarks.measure("lookup and removal per block", STACK, () -> {
+            long size = 0;
+            for (int i = 0; i < STACK; i++) {
+                EntityExplodeEvent event = new EntityExplodeEvent(tnt, centres[i], new ArrayList<>(explosions.get(i)), 1.0f);
+                filterPerBlock(claimManager, world, event.blockList());
+                size += event.blockList().size();
+            }
+            return size;
+        });
+        Benchmarks.measure("onEntityExplode", STACK, () -> {
+            long size = 0;
+            for (int i = 0; i < STACK; i++) {
+                EntityExplodeEvent event = new EntityExplodeEvent(tnt, centres[i], new ArrayList<>(explosions.get(i)), 1.0f);
+                listener.onEntityExplode(event);
+                size += event.blockList().size();
+            }
+            return size;
+        });
+    }
+
+    /**
+     * The same filter resolving the claim of every block and removing blocks one by one
+     */
+    private static void filterPerBlock(ClaimManager claimManager, World world, List<Block> blocks) {
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Block block = blocks.get(i);
+            Claim claim = claimManager.getClaimAtChunk(world, block.getX() >> 4, block.getZ() >> 4);
+            if (claim != null && !claim.getFlag(ClaimFlag.EXPLOSIONS)) {
+                blocks.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.managers.ClaimManager;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of the LAVA_FLOW check during a lava cast: flows spreading sideways and down over
+ * a 256x256-block area between claims, so most flows stay in their chunk and some cross into
+ * the wilderness, into their own claim or into another claim.
+ * Compared with resolving the claims at both ends of every flow.
+ */
+@Tag(Benchmarks.TAG)
+class FluidFlowBenchmark {
+
+    private static final int FLOWS = 1_000_000;
+    private static final int AREA = 256; // Blocks, centred on the origin
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void lavaCast() {
+        World world = TestPlugin.world("world");
+
+        // 2x2-chunk claims on every other 3-chunk cell, every third one allowing lava
+        List<Claim> claims = new ArrayList<>();
+        for (int cellX = -3; cellX < 3; cellX++) {
+            for (int cellZ = -3; cellZ < 3; cellZ++) {
+                if (((cellX + cellZ) & 1) == 0) {
+                    Claim claim = TestPlugin.claim(claims.size() + 1, "world", cellX * 3, cellZ * 3, 2);
+                    claim.setFlag(ClaimFlag.LAVA_FLOW, claims.size() % 3 == 0);
+                    claims.add(claim);
+                }
+            }
+        }
+        BetterClaim plugin = TestPlugin.withClaims(folder, claims);
+        ClaimManager claimManager = plugin.getClaimManager();
+        EnvironmentProtectionListener listener = new EnvironmentProtectionListener(plugin);
+
+        Random random = new Random(21);
+        int[][] directions = {{1, 0, 0}, {-1, 0, 0}, {0, 0, 1}, {0, 0, -1}, {0, -1, 0}};
+        BlockFromToEvent[] events = new BlockFromToEvent[FLOWS];
+        int crossing = 0;
+        for (int i = 0; i < FLOWS; i++) {
+            int x = random.nextInt(AREA) - AREA / 2;
+            int y = 64 + random.nextInt(64);
+            int z = random.nextInt(AREA) - AREA / 2;
+            int[] d = directions[random.nextInt(directions.length)];
+            Block from = TestPlugin.block(world, x, y, z, Material.LAVA);
+            Block to = TestPlugin.block(world, x + d[0], y + d[1], z + d[2], Material.AIR);
+            events[i] = new BlockFromToEvent(from, to);
+            if ((x >> 4) != ((x + d[0]) >> 4) || (z >> 4) != ((z + d[2]) >> 4)) {
+                crossing++;
+            }
+        }
+        Benchmarks.report("flows crossing a chunk border", crossing + " of " + FLOWS);
+
+        // Both checks must stop the same flows
+        int cancelled = 0;
+        int denied = 0;
+        for (BlockFromToEvent event : events) {
+            listener.onBlockFromTo(event);
+            cancelled += event.isCancelled() ? 1 : 0;
+            denied += resolvingBothEnds(claimManager, event) ? 0 : 1;
+        }
+        assertEquals(denied, cancelled, "Flows stopped");
+        Benchmarks.report("flows stopped", cancelled + " of " + FLOWS);
+
+        Benchmarks.measure("event access only (baseline)", FLOWS, () -> {
+            long sum = 0;
+            for (BlockFromToEvent event : events) {
+                sum += event.getBlock().getX() + event.getToBlock().getZ();
+            }
+            return sum;
+        });
+        Benchmarks.measure("resolving the claims at both ends", FLOWS, () -> {
+            long allowed = 0;
+            for (BlockFromToEvent event : events) {
+                allowed += resolvingBothEnds(claimManager, event) ? 1 : 0;
+            }
+            return allowed;
+        });
+        Benchmarks.measure("onBlockFromTo", FLOWS, () -> {
+            for (BlockFromToEvent event : events) {
+                listener.onBlockFromTo(event);
+            }
+            return events.length;
+        });
+    }
+
+    /**
+     * The same rule without the chunk comparison and ID shortcuts
+     */
+    private static boolean resolvingBothEnds(ClaimManager claimManager, BlockFromToEvent event) {
+        Block from = event.getBlock();
+        Block to = event.getToBlock();
+        Claim fromClaim = claimManager.getClaimAtChunk(from.getWorld(), from.getX() >> 4, from.getZ() >> 4);
+        Claim toClaim = claimManager.getClaimAtChunk(to.getWorld(), to.getX() >> 4, to.getZ() >> 4);
+        return toClaim == null || toClaim == fromClaim || toClaim.getFlag(ClaimFlag.LAVA_FLOW);
+    }
+}
@@ -0,0 +1,134 @@
+package net.fliuxx.betterClaim.listeners;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.managers.ClaimManager;
+import net.fliuxx.betterClaim.managers.ConfigManager;
+import net.fliuxx.betterClaim.managers.DatabaseManager;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A mocked plugin whose ClaimManager has loaded a fixed set of claims, and minimal worlds,
+ * blocks and entities for driving listeners without a server.
+ *
+ * Blocks and entities are plain proxies rather than Mockito mocks, so they add only a few
+ * nanoseconds to each handler call.
+ */
+final class TestPlugin {
+
+    private TestPlugin() {
+    }
+
+    /**
+     * Create a plugin with claims loaded, journal and lazy loading disabled
+     * @param folder The plugin data folder
+     * @param claims The claims the database returns, with their IDs set
+     * @return The plugin, with a real ClaimManager
+     */
+    static BetterClaim withClaims(Path folder, List<Claim> claims) {
+        for (Claim claim : claims) {
+            claim.clearDirty(); // As loaded from the database
+        }
+
+        ConfigManager config = mock(ConfigManager.class);
+        when(config.isLazyLoading()).thenReturn(false);
+        when(config.isJournalEnabled()).thenReturn(false);
+
+        DatabaseManager database = mock(DatabaseManager.class);
+        when(database.loadAllClaims()).thenReturn(CompletableFuture.completedFuture(claims));
+        when(database.getReadExecutor()).thenReturn(Runnable::run);
+
+        BetterClaim plugin = mock(BetterClaim.class);
+        when(plugin.getConfigManager()).thenReturn(config);
+        when(plugin.getDatabaseManager()).thenReturn(database);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("BetterClaimTest"));
+
+        ClaimManager claimManager = new ClaimManager(plugin);
+        when(plugin.getClaimManager()).thenReturn(claimManager);
+        claimManager.loadClaims(); // Completes on this thread, the load is already done
+        if (!claimManager.isLoaded()) {
+            throw new IllegalStateException("Claims did not load");
+        }
+        return plugin;
+    }
+
+    /**
+     * Create a claim covering a rectangle of chunks
+     * @param id Claim ID
+     * @param world World name
+     * @param minChunkX Lowest chunk X
+     * @param minChunkZ Lowest chunk Z
+     * @param size Width and depth in chunks
+     * @return The claim, with default flags
+     */
+    static Claim claim(int id, String world, int minChunkX, int minChunkZ, int size) {
+        Claim claim = new Claim(new UUID(0L, id), "owner" + id, world);
+        claim.setId(id);
+        List<ChunkLocation> chunks = new ArrayList<>(size * size);
+        for (int x = minChunkX; x < minChunkX + size; x++) {
+            for (int z = minChunkZ; z < minChunkZ + size; z++) {
+                chunks.add(new ChunkLocation(world, x, z));
+            }
+        }
+        claim.addChunks(chunks);
+        return claim;
+    }
+
+    static World world(String name) {
+        return proxy(World.class, (method, self) -> switch (method) {
+            case "getName", "toString" -> name;
+            default -> null;
+        });
+    }
+
+    static Block block(World world, int x, int y, int z, Material type) {
+        return proxy(Block.class, (method, self) -> switch (method) {
+            case "getX" -> x;
+            case "getY" -> y;
+            case "getZ" -> z;
+            case "getType" -> type;
+            case "getWorld" -> world;
+            case "toString" -> type + "@" + x + "," + y + "," + z;
+            default -> null;
+        });
+    }
+
+    static Entity entity(World world, EntityType type) {
+        return proxy(Entity.class, (method, self) -> switch (method) {
+            case "getWorld" -> world;
+            case "getType" -> type;
+            case "toString" -> type.toString();
+            default -> null;
+        });
+    }
+
+    private interface Answer {
+        Object answer(String method, Object self);
+    }
+
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(TestPlugin.class.getClassLoader(), new Class<?>[] {type}, (self, method, args) ->
+                switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(self);
+                    case "equals" -> self == args[0];
+                    default -> answer.answer(method.getName(), self);
+                }));
+    }
+}
@@ -0,0 +1,110 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Memory and lookup latency of the chunk index against the ConcurrentHashMap keyed by
+ * ChunkLocation it replaced: 150k claimed chunks in one world, random lookups with about
+ * half of them hitting a claim.
+ */
+@Tag(Benchmarks.TAG)
+class ChunkIndexBenchmark {
+
+    private static final String WORLD = "world";
+    private static final int CLAIMS = 15_000;
+    private static final int CHUNKS_PER_CLAIM = 10;
+    private static final int LOOKUPS = 2_000_000;
+
+    @Test
+    void compareWithChunkLocationMap() {
+        Random random = new Random(1);
+        List<Claim> claims = createClaims(random);
+
+        long before = Benchmarks.usedHeap();
+        Map<ChunkLocation, Claim> map = new ConcurrentHashMap<>();
+        for (Claim claim : claims) {
+            for (ChunkLocation chunk : claim.getChunks()) {
+                map.put(new ChunkLocation(WORLD, chunk.getX(), chunk.getZ()), claim);
+            }
+        }
+        long mapBytes = Benchmarks.usedHeap() - before;
+
+        before = Benchmarks.usedHeap();
+        ClaimIndex.Builder builder = ClaimIndex.EMPTY.toBuilder().putClaims(claims);
+        for (Claim claim : claims) {
+            for (ChunkLocation chunk : claim.getChunks()) {
+                builder.putChunk(0, chunk.getX(), chunk.getZ(), claim.getId());
+            }
+        }
+        ClaimIndex index = builder.build();
+        long indexBytes = Benchmarks.usedHeap() - before;
+
+        assertEquals(map.size(), index.getTotalChunks());
+        Benchmarks.report("ConcurrentHashMap<ChunkLocation, Claim> heap", Benchmarks.megabytes(mapBytes));
+        Benchmarks.report("ClaimIndex heap (incl. claim map)", Benchmarks.megabytes(indexBytes));
+        Benchmarks.report("ClaimIndex chunk tables (memoryFootprint)", Benchmarks.megabytes(index.getMemoryFootprint()));
+
+        // Probe around the claimed area so about half of the lookups hit
+        int[] xs = new int[LOOKUPS];
+        int[] zs = new int[LOOKUPS];
+        List<ChunkLocation> claimed = new ArrayList<>(map.keySet());
+        for (int i = 0; i < LOOKUPS; i++) {
+            ChunkLocation chunk = claimed.get(random.nextInt(claimed.size()));
+            boolean hit = random.nextBoolean();
+            xs[i] = chunk.getX() + (hit ? 0 : 1 + random.nextInt(3));
+            zs[i] = chunk.getZ();
+        }
+
+        Benchmarks.measure("ConcurrentHashMap<ChunkLocation, Claim> lookup", LOOKUPS, () -> {
+            long found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (map.get(new ChunkLocation(WORLD, xs[i], zs[i])) != null) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        Benchmarks.measure("ClaimIndex lookup", LOOKUPS, () -> {
+            long found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                if (index.getClaim(0, xs[i], zs[i]) != null) {
+                    found++;
+                }
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Claims of ten chunks in a row, scattered over a 4000x4000-chunk area
+     */
+    private static List<Claim> createClaims(Random random) {
+        List<Claim> claims = new ArrayList<>(CLAIMS);
+        Set<Long> taken = new HashSet<>();
+        while (claims.size() < CLAIMS) {
+            int x = random.nextInt(4000) - 2000;
+            int z = random.nextInt(4000) - 2000;
+            if (!taken.add(ChunkLocation.pack(x / 16, z))) {
+                continue; // Keep the rows of different claims apart
+            }
+            Claim claim = new Claim(UUID.randomUUID(), "owner", WORLD);
+            claim.setId(claims.size() + 1);
+            List<ChunkLocation> chunks = new ArrayList<>(CHUNKS_PER_CLAIM);
+            for (int i = 0; i < CHUNKS_PER_CLAIM; i++) {
+                chunks.add(new ChunkLocation(WORLD, (x / 16) * 16 + i, z));
+            }
+            claim.addChunks(chunks);
+            claims.add(claim);
+        }
+        return claims;
+    }
+}
@@ -0,0 +1,155 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One writer publishing index versions while readers check every version they see.
+ * Claims are placed in disjoint 8x8-chunk cells so the expected owner of any chunk is known.
+ */
+class ClaimIndexConcurrencyTest {
+
+    private static final int WORLDS = 2;
+    private static final int CELLS = 32; // Per axis, centred on the origin
+    private static final int CELL_SIZE = 8;
+    private static final int READERS = 4;
+    private static final int BATCHES = 20_000;
+
+    private volatile ClaimIndex index = ClaimIndex.EMPTY;
+    private final AtomicBoolean writing = new AtomicBoolean(true);
+
+    @Test
+    @Timeout(120)
+    void readersSeeConsistentVersions() throws Exception {
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        List<Future<List<ClaimIndex>>> results = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            long seed = i;
+            results.add(readers.submit(() -> read(new Random(seed))));
+        }
+
+        try {
+            write(new Random(42));
+        } finally {
+            writing.set(false);
+            readers.shutdown();
+        }
+
+        // Versions a reader held on to must still be intact after everything that came later
+        int kept = 0;
+        for (Future<List<ClaimIndex>> result : results) {
+            for (ClaimIndex old : result.get()) {
+                verify(old);
+                kept++;
+            }
+        }
+        verify(index);
+        assertTrue(kept > 0, "Readers kept no versions");
+    }
+
+    private void write(Random random) {
+        Map<Integer, Claim> occupied = new HashMap<>(); // Cell key to the claim in it
+        int nextId = 1;
+
+        for (int batch = 0; batch < BATCHES; batch++) {
+            ClaimIndex.Builder builder = index.toBuilder();
+            int edits = 1 + random.nextInt(4);
+            for (int edit = 0; edit < edits; edit++) {
+                int worldId = random.nextInt(WORLDS);
+                int cellX = random.nextInt(CELLS) - CELLS / 2;
+                int cellZ = random.nextInt(CELLS) - CELLS / 2;
+                int cell = cellKey(worldId, cellX, cellZ);
+
+                Claim existing = occupied.remove(cell);
+                if (existing != null) {
+                    builder.removeClaim(existing);
+                    for (ChunkLocation chunk : existing.getChunks()) {
+                        builder.removeChunk(worldId, chunk.getX(), chunk.getZ());
+                    }
+                    continue;
+                }
+
+                Claim claim = new Claim(new UUID(0L, random.nextInt(64)), "owner", "world" + worldId);
+                claim.setId(nextId++);
+                int chunks = 1 + random.nextInt(CELL_SIZE * CELL_SIZE);
+                for (int i = 0; i < chunks; i++) {
+                    int chunkX = cellX * CELL_SIZE + random.nextInt(CELL_SIZE);
+                    int chunkZ = cellZ * CELL_SIZE + random.nextInt(CELL_SIZE);
+                    claim.addChunk(new ChunkLocation(claim.getWorld(), chunkX, chunkZ));
+                }
+
+                builder.putClaim(claim);
+                for (ChunkLocation chunk : claim.getChunks()) {
+                    builder.putChunk(worldId, chunk.getX(), chunk.getZ(), claim.getId());
+                }
+                occupied.put(cell, claim);
+            }
+            index = builder.build();
+        }
+    }
+
+    private List<ClaimIndex> read(Random random) {
+        List<ClaimIndex> kept = new ArrayList<>();
+        long lastVersion = -1;
+        while (writing.get()) {
+            ClaimIndex current = index;
+            assertTrue(current.getVersion() >= lastVersion, "Version went backwards");
+            if (current.getVersion() != lastVersion) {
+                verify(current);
+                lastVersion = current.getVersion();
+                if (random.nextInt(200) == 0) {
+                    kept.add(current);
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static void verify(ClaimIndex snapshot) {
+        int totalChunks = 0;
+        for (Claim claim : snapshot.getAllClaims()) {
+            int worldId = worldId(claim);
+            for (ChunkLocation chunk : claim.getChunks()) {
+                assertEquals(claim.getId().intValue(), snapshot.getClaimId(worldId, chunk.getX(), chunk.getZ()),
+                        "Chunk " + chunk + " of claim " + claim.getId() + " in version " + snapshot.getVersion());
+            }
+            assertSame(claim, snapshot.getClaimById(claim.getId()));
+            assertTrue(snapshot.getClaims(claim.getOwnerUUID()).contains(claim), "Claim missing from its owner's list");
+            totalChunks += claim.getChunkCount();
+        }
+        assertEquals(totalChunks, snapshot.getTotalChunks(), "Total chunks in version " + snapshot.getVersion());
+
+        // Every claimed chunk belongs to a claim of this version that covers it
+        int half = CELLS / 2 * CELL_SIZE;
+        for (int worldId = 0; worldId < WORLDS; worldId++) {
+            for (int chunkX = -half; chunkX < half; chunkX++) {
+                for (int chunkZ = -half; chunkZ < half; chunkZ++) {
+                    int claimId = snapshot.getClaimId(worldId, chunkX, chunkZ);
+                    if (claimId == 0) {
+                        continue;
+                    }
+                    Claim claim = snapshot.getClaimById(claimId);
+                    assertNotNull(claim, "Chunk mapped to missing claim " + claimId);
+                    assertTrue(claim.hasChunk(new ChunkLocation(claim.getWorld(), chunkX, chunkZ)),
+                            "Chunk " + chunkX + "," + chunkZ + " mapped to claim " + claimId + " that does not cover it");
+                }
+            }
+        }
+    }
+
+    private static int worldId(Claim claim) {
+        return claim.getWorld().charAt(claim.getWorld().length() - 1) - '0';
+    }
+
+    private static int cellKey(int worldId, int cellX, int cellZ) {
+        return ((worldId * CELLS) + cellX + CELLS / 2) * CELLS + cellZ + CELLS / 2;
+    }
+}
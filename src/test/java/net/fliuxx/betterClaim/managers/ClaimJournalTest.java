@@ -0,0 +1,319 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.models.ClaimMember;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Records written to the journal, reopened and replayed the way a restart after a crash
+ * replays them: torn and corrupted tails, and compaction across the two journal files.
+ */
+class ClaimJournalTest {
+
+    private static final int HEADER_SIZE = 12; // Magic and generation, see ClaimJournal
+    private static final Logger LOGGER = Logger.getLogger("BetterClaimTest");
+    private static final UUID MEMBER = new UUID(7, 7);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void replaysEveryRecordTypeAfterReopen() throws IOException {
+        ClaimJournal journal = open();
+        Claim kept = claim(1, "Home");
+        journal.appendClaim(kept);
+        kept.setFlag(ClaimFlag.PVP, true);
+        journal.appendFlags(kept);
+        ChunkLocation added = new ChunkLocation("world", -40, -41);
+        journal.appendChunkAdded(kept, added);
+        ClaimMember moderator = new ClaimMember(new UUID(8, 8), "Mod", "moderator");
+        journal.appendMemberSaved(kept, moderator);
+        journal.appendMemberRemoved(kept, MEMBER);
+        Claim removed = claim(2, "Gone");
+        journal.appendClaim(removed);
+        journal.appendDeleted(removed);
+        journal.close();
+
+        Map<Integer, Claim> claims = new HashMap<>();
+        List<Claim> deleted = replay(claims);
+
+        assertEquals(Set.of(1), claims.keySet());
+        assertEquals(List.of(removed), deleted);
+        Claim replayed = claims.get(1);
+        assertEquals("Home", replayed.getName());
+        assertEquals(kept.getOwnerUUID(), replayed.getOwnerUUID());
+        assertTrue(replayed.getFlag(ClaimFlag.PVP));
+        assertTrue(replayed.hasChunk(added));
+        assertEquals(3, replayed.getChunkCount());
+        assertNull(replayed.getMember(MEMBER));
+        assertEquals("moderator", replayed.getMember(moderator.getPlayerUUID()).getTrustLevel());
+    }
+
+    @Test
+    void dropsTornTail() throws IOException {
+        ClaimJournal journal = open();
+        Claim claim = claim(1, "Home");
+        journal.appendClaim(claim);
+        int intact = journal.getSize();
+        claim.setFlag(ClaimFlag.PVP, true);
+        journal.appendFlags(claim);
+        int written = journal.getSize();
+        journal.close();
+
+        // Cut the last record short, as a crash halfway through writing it would
+        try (RandomAccessFile file = new RandomAccessFile(file(0), "rw")) {
+            file.setLength(HEADER_SIZE + written - 3);
+        }
+
+        journal = open();
+        assertEquals(intact, journal.getSize());
+        journal.appendChunkAdded(claim, new ChunkLocation("world", 50, 50));
+        journal.close();
+
+        // Records appended after the torn one follow the last intact record
+        Map<Integer, Claim> claims = new HashMap<>();
+        replay(claims);
+        assertFalse(claims.get(1).getFlag(ClaimFlag.PVP));
+        assertTrue(claims.get(1).hasChunk(new ChunkLocation("world", 50, 50)));
+    }
+
+    @Test
+    void stopsAtRecordWithBadChecksum() throws IOException {
+        ClaimJournal journal = open();
+        Claim claim = claim(1, "Home");
+        journal.appendClaim(claim);
+        int intact = journal.getSize();
+        claim.setFlag(ClaimFlag.PVP, true);
+        journal.appendFlags(claim);
+        journal.appendChunkAdded(claim, new ChunkLocation("world", 50, 50));
+        journal.close();
+
+        // Flip a payload byte of the flags record; the records after it are not trusted either
+        try (RandomAccessFile file = new RandomAccessFile(file(0), "rw")) {
+            long offset = HEADER_SIZE + intact + 8 + 2;
+            file.seek(offset);
+            int value = file.read();
+            file.seek(offset);
+            file.write(value ^ 0xFF);
+        }
+
+        ClaimJournal reopened = open();
+        assertEquals(intact, reopened.getSize());
+        reopened.close();
+
+        Map<Integer, Claim> claims = new HashMap<>();
+        replay(claims);
+        assertFalse(claims.get(1).getFlag(ClaimFlag.PVP));
+        assertEquals(2, claims.get(1).getChunkCount());
+    }
+
+    @Test
+    void compactionAlternatesFiles() throws IOException {
+        ClaimJournal journal = open();
+        journal.setReady(true);
+        Claim first = claim(1, "Journal");
+        journal.appendClaim(first);
+        long mark = journal.getMark();
+        ChunkLocation added = new ChunkLocation("world", 60, 60);
+        journal.appendChunkAdded(first, added);
+        Claim second = claim(2, "Second");
+        journal.appendClaim(second);
+        int afterMark = journal.getSize() - (int) mark;
+
+        journal.compact(mark);
+        assertEquals(afterMark, journal.getSize());
+        assertEquals(mark + afterMark, journal.getMark());
+        first.setFlag(ClaimFlag.EXPLOSIONS, true);
+        journal.appendFlags(first);
+        journal.close();
+        assertTrue(file(1).isFile());
+
+        // The claim record before the mark is gone, the database copy stays as loaded
+        Map<Integer, Claim> claims = new HashMap<>();
+        claims.put(1, claim(1, "Database"));
+        replay(claims);
+        assertEquals("Database", claims.get(1).getName());
+        assertTrue(claims.get(1).hasChunk(added));
+        assertTrue(claims.get(1).getFlag(ClaimFlag.EXPLOSIONS));
+        assertEquals("Second", claims.get(2).getName());
+
+        // Back to the first file
+        journal = open();
+        journal.setReady(true);
+        mark = journal.getMark();
+        journal.appendDeleted(second);
+        journal.compact(mark);
+        journal.close();
+
+        claims = new HashMap<>();
+        claims.put(1, claim(1, "Database"));
+        claims.put(2, claim(2, "Second"));
+        List<Claim> deleted = replay(claims);
+        assertEquals(Set.of(1), claims.keySet());
+        assertEquals(List.of(second), deleted);
+        assertFalse(claims.get(1).hasChunk(added));
+    }
+
+    @Test
+    void compactionWaitsUntilReady() throws IOException {
+        ClaimJournal journal = open();
+        journal.appendClaim(claim(1, "Home"));
+        int size = journal.getSize();
+        journal.compact(journal.getMark());
+        assertEquals(size, journal.getSize());
+        journal.close();
+        assertFalse(file(1).exists());
+    }
+
+    @Test
+    void interruptedCompactionKeepsPreviousFile() throws IOException {
+        ClaimJournal journal = open();
+        journal.setReady(true);
+        Claim claim = claim(1, "Home");
+        journal.appendClaim(claim);
+        long mark = journal.getMark();
+        journal.appendChunkAdded(claim, new ChunkLocation("world", 70, 70));
+        journal.compact(mark);
+        journal.close();
+
+        // A crash before the new file's header was written leaves it without its magic
+        try (RandomAccessFile file = new RandomAccessFile(file(1), "rw")) {
+            file.writeInt(0);
+        }
+
+        Map<Integer, Claim> claims = new HashMap<>();
+        replay(claims);
+        assertEquals("Home", claims.get(1).getName());
+        assertTrue(claims.get(1).hasChunk(new ChunkLocation("world", 70, 70)));
+    }
+
+    @Test
+    @Timeout(60)
+    void compactionKeepsRecordsAppendedMeanwhile() throws Exception {
+        ClaimJournal journal = open();
+        journal.setReady(true);
+        Claim claim = claim(1, "Home");
+        journal.appendClaim(claim);
+        long mark = journal.getMark();
+
+        int appends = 5_000;
+        Thread appender = new Thread(() -> {
+            for (int i = 0; i < appends; i++) {
+                journal.appendChunkAdded(claim, new ChunkLocation("world", i, 1_000));
+            }
+        });
+        appender.start();
+        journal.compact(mark);
+        appender.join();
+        journal.close();
+
+        Map<Integer, Claim> claims = new HashMap<>();
+        claims.put(1, claim(1, "Database"));
+        replay(claims);
+        assertEquals(2 + appends, claims.get(1).getChunkCount());
+    }
+
+    @Test
+    void claimManagerReplaysOnLoad() throws IOException {
+        Claim changed = claim(1, "Home");
+        Claim deleted = claim(2, "Gone");
+        Claim created = claim(3, "New");
+        ChunkLocation added = new ChunkLocation("world", 12, 0);
+
+        ClaimJournal journal = open();
+        changed.setFlag(ClaimFlag.PVP, true);
+        journal.appendFlags(changed);
+        journal.appendChunkAdded(changed, added);
+        journal.appendDeleted(deleted);
+        journal.appendClaim(created);
+        journal.close();
+
+        // The database still has claims 1 and 2 as they were before the journaled changes
+        Claim storedChanged = claim(1, "Home");
+        Claim storedDeleted = claim(2, "Gone");
+        DatabaseManager database = mock(DatabaseManager.class);
+        when(database.loadAllClaims()).thenReturn(CompletableFuture.completedFuture(List.of(storedChanged, storedDeleted)));
+        when(database.getReadExecutor()).thenReturn(Runnable::run);
+
+        ConfigManager config = mock(ConfigManager.class);
+        when(config.isJournalEnabled()).thenReturn(true);
+        when(config.isLazyLoading()).thenReturn(false);
+
+        BetterClaim plugin = mock(BetterClaim.class);
+        when(plugin.getConfigManager()).thenReturn(config);
+        when(plugin.getDatabaseManager()).thenReturn(database);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(LOGGER);
+
+        ClaimManager claimManager = new ClaimManager(plugin);
+        try {
+            claimManager.loadClaims(); // Completes on this thread, the load is already done
+            assertTrue(claimManager.isLoaded());
+
+            assertTrue(claimManager.getClaimById(1).getFlag(ClaimFlag.PVP));
+            assertEquals(1, claimManager.getClaim(added).getId());
+            assertNull(claimManager.getClaimById(2));
+            assertNull(claimManager.getClaim(new ChunkLocation("world", 20, 0)));
+            assertEquals("New", claimManager.getClaimById(3).getName());
+            assertEquals(3, claimManager.getClaim(new ChunkLocation("world", 30, 0)).getId());
+
+            // Replayed changes go to the database, the journal is kept until they are saved
+            verify(database).deleteClaim(storedDeleted);
+            verify(database).queueSave(storedChanged);
+            verify(database).queueSave(claimManager.getClaimById(3));
+            assertTrue(claimManager.getJournal().getSize() > 0);
+        } finally {
+            claimManager.getJournal().close();
+        }
+    }
+
+    private ClaimJournal open() throws IOException {
+        ClaimJournal journal = new ClaimJournal(new File(folder.toFile(), "journal"), LOGGER);
+        journal.open();
+        return journal;
+    }
+
+    private List<Claim> replay(Map<Integer, Claim> claims) throws IOException {
+        ClaimJournal journal = open();
+        try {
+            return journal.replay(claims);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private File file(int index) {
+        return new File(folder.toFile(), "journal/journal-" + index + ".dat");
+    }
+
+    /**
+     * A saved claim of two chunks at (id * 10, 0) with one trusted member
+     */
+    private static Claim claim(int id, String name) {
+        Claim claim = new Claim(new UUID(id, id), "owner" + id, "world");
+        claim.setId(id);
+        claim.setName(name);
+        claim.addChunks(List.of(new ChunkLocation("world", id * 10, 0), new ChunkLocation("world", id * 10 + 1, 0)));
+        claim.addMember(new ClaimMember(MEMBER, "Member", "trusted"));
+        claim.clearDirty();
+        return claim;
+    }
+}
@@ -0,0 +1,56 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.models.Claim;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Startup load of all claims with the table scans of {@link DatabaseManager#loadAllClaims()}
+ * against loading them one at a time, a claim query plus one per child table as before.
+ * Runs at 1k, 100k and 1M chunks, ten per claim.
+ */
+@Tag(Benchmarks.TAG)
+class ClaimLoadBenchmark {
+
+    private static final int CHUNKS_PER_CLAIM = 10;
+    private static final int MEMBERS_PER_CLAIM = 3;
+
+    @TempDir
+    Path folder;
+
+    @ParameterizedTest(name = "{0} claims")
+    @ValueSource(ints = {100, 10_000, 100_000})
+    void compareScanWithQueryPerClaim(int claims) {
+        DatabaseManager database = TestDatabase.open(folder, false);
+        TestDatabase.save(database, TestDatabase.createClaims(claims, CHUNKS_PER_CLAIM, MEMBERS_PER_CLAIM, 14));
+
+        List<Claim> scanned = database.loadAllClaims().join();
+        assertEquals(claims, scanned.size());
+        assertEquals(claims * CHUNKS_PER_CLAIM, scanned.stream().mapToInt(Claim::getChunkCount).sum());
+
+        int totalChunks = claims * CHUNKS_PER_CLAIM;
+        Benchmarks.measure("queries per claim, " + totalChunks + " chunks", claims, () -> {
+            long chunks = 0;
+            for (int id = 1; id <= claims; id++) {
+                chunks += database.loadClaim(id).getChunkCount();
+            }
+            return chunks;
+        });
+        Benchmarks.measure("table scans, " + totalChunks + " chunks", claims, () -> {
+            long chunks = 0;
+            for (Claim claim : database.loadAllClaims().join()) {
+                chunks += claim.getChunkCount();
+            }
+            return chunks;
+        });
+        database.closeConnection();
+    }
+}
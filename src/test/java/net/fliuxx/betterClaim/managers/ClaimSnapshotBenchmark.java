@@ -0,0 +1,82 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.models.Claim;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Startup load of 1M claimed chunks from the binary snapshot against the table scans.
+ */
+@Tag(Benchmarks.TAG)
+class ClaimSnapshotBenchmark {
+
+    private static final int CLAIMS = 100_000;
+    private static final int CHUNKS_PER_CLAIM = 10;
+    private static final int MEMBERS_PER_CLAIM = 2;
+    private static final long TOKEN = 17L;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void snapshotReadAndWrite() throws IOException {
+        List<Claim> claims = TestDatabase.createClaims(CLAIMS, CHUNKS_PER_CLAIM, MEMBERS_PER_CLAIM, 17);
+        File file = folder.resolve("claims.db.snapshot").toFile();
+        ClaimSnapshot.write(file, claims, TOKEN);
+
+        List<Claim> read = ClaimSnapshot.read(file, TOKEN);
+        assertEquals(CLAIMS, read.size());
+        assertEquals(CLAIMS * CHUNKS_PER_CLAIM, read.stream().mapToInt(Claim::getChunkCount).sum());
+        Benchmarks.report("snapshot size", Benchmarks.megabytes(file.length()));
+
+        Benchmarks.measure("snapshot write, per claim", CLAIMS, io(() -> {
+            ClaimSnapshot.write(file, claims, TOKEN);
+            return file.length();
+        }));
+        Benchmarks.measure("snapshot read, per claim", CLAIMS, io(() -> ClaimSnapshot.read(file, TOKEN).size()));
+    }
+
+    @Test
+    void compareWithTableLoad() throws IOException {
+        List<Claim> claims = TestDatabase.createClaims(CLAIMS, CHUNKS_PER_CLAIM, MEMBERS_PER_CLAIM, 17);
+        DatabaseManager database = TestDatabase.open(folder, true);
+        TestDatabase.save(database, claims);
+
+        // Through the database once, which uses up the snapshot's token
+        database.writeSnapshot(claims);
+        assertEquals(CLAIMS, database.loadAllClaims().join().size());
+
+        File file = folder.resolve(TestDatabase.FILENAME + ".snapshot").toFile();
+        ClaimSnapshot.write(file, claims, TOKEN);
+
+        // Without a token every load below falls back to the tables
+        Benchmarks.measure("table scans, per claim", CLAIMS, () -> database.loadAllClaims().join().size());
+        Benchmarks.measure("snapshot, per claim", CLAIMS, io(() -> ClaimSnapshot.read(file, TOKEN).size()));
+        database.closeConnection();
+    }
+
+    private interface IoWork {
+        long run() throws IOException;
+    }
+
+    private static LongSupplier io(IoWork work) {
+        return () -> {
+            try {
+                return work.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
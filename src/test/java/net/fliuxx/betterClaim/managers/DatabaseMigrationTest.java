@@ -0,0 +1,165 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.models.ClaimMember;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Startup migration of a database in the original schema to schema v2, checked row by row
+ * against hand-written v1 data covering the cases the conversion treats specially.
+ */
+class DatabaseMigrationTest {
+
+    private static final UUID OWNER = UUID.fromString("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+    private static final UUID OTHER_OWNER = UUID.fromString("f47ac10b-58cc-4372-a567-0e02b2c3d479");
+    private static final UUID TRUSTED = UUID.fromString("00000000-0000-0001-0000-000000000001");
+    private static final UUID ADMIN = UUID.fromString("ffffffff-ffff-ffff-ffff-fffffffffffe");
+
+    private static final int EDGE = 2_097_151; // Largest storable chunk coordinate
+    private static final long CREATED_AT = 1_600_000_000_000L;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void migratesOriginalSchema() throws SQLException {
+        String url = "jdbc:sqlite:" + folder.resolve(TestDatabase.FILENAME).toAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            writeOriginalClaims(stmt);
+        }
+
+        DatabaseManager database = TestDatabase.open(folder, false);
+        try {
+            Map<Integer, Claim> claims = new HashMap<>();
+            for (Claim claim : database.loadAllClaims().join()) {
+                claims.put(claim.getId(), claim);
+            }
+            assertEquals(Set.of(1, 2, 3), claims.keySet(), "claim 7 was deleted before the migration");
+
+            Claim home = claims.get(1);
+            assertEquals(OWNER, home.getOwnerUUID());
+            assertEquals("Alice", home.getOwnerName());
+            assertEquals("world", home.getWorld());
+            assertEquals("Home", home.getName());
+            assertEquals(CREATED_AT, home.getCreatedAt().getTime());
+            assertEquals(OTHER_OWNER, claims.get(2).getOwnerUUID());
+            assertNull(claims.get(2).getName());
+
+            // Stored values win, flags without a row and unknown flag names fall back to defaults
+            assertTrue(home.getFlag(ClaimFlag.PVP));
+            assertFalse(home.getFlag(ClaimFlag.WATER_FLOW));
+            assertFalse(home.getFlag(ClaimFlag.BLOCK_BREAK));
+            assertTrue(home.getFlag(ClaimFlag.MOB_SPAWNING));
+            assertFalse(home.getFlag(ClaimFlag.EXPLOSIONS));
+            assertEquals(ClaimFlag.getDefaultMask(), claims.get(2).getFlagMask());
+
+            assertEquals(2, home.getMembers().size());
+            assertMember(home.getMember(TRUSTED), "Bob", "trusted");
+            assertMember(home.getMember(ADMIN), "Carol", "admin");
+            assertTrue(claims.get(2).getMembers().isEmpty());
+
+            // Negative and edge coordinates round-trip; the chunk claimed twice stays with claim 1
+            assertEquals(Set.of(
+                    new ChunkLocation("world", 0, 0),
+                    new ChunkLocation("world", -1, -1),
+                    new ChunkLocation("world", -EDGE - 1, EDGE)), home.getChunks());
+            assertEquals(Set.of(new ChunkLocation("world_nether", 0, 0)), claims.get(2).getChunks());
+            assertEquals(Set.of(new ChunkLocation("world", 3, -3)), claims.get(3).getChunks());
+
+            // New claims continue after the highest ID ever handed out, not the highest remaining
+            Claim created = new Claim(OWNER, "Alice", "world");
+            database.saveClaim(created).join();
+            assertEquals(8, (int) created.getId());
+        } finally {
+            database.closeConnection();
+        }
+
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            assertEquals(2, queryLong(stmt, "PRAGMA user_version"));
+            assertEquals(0, queryLong(stmt, "SELECT COUNT(*) FROM sqlite_master WHERE name LIKE '%_v1'"));
+            assertEquals(0, queryLong(stmt, "SELECT COUNT(*) FROM claim_members WHERE claim_id = 7"));
+            assertEquals(0, queryLong(stmt, "SELECT COUNT(*) FROM claim_chunks WHERE claim_id = 7"));
+
+            // UUIDs are 16-byte blobs now
+            try (ResultSet rs = stmt.executeQuery("SELECT owner_uuid, typeof(owner_uuid) FROM claims WHERE id = 1")) {
+                assertTrue(rs.next());
+                assertEquals("blob", rs.getString(2));
+                assertEquals(16, rs.getBytes(1).length);
+            }
+        }
+        assertTrue(new File(folder.toFile(), TestDatabase.FILENAME + ".v1.bak").isFile());
+    }
+
+    @Test
+    void chunkKeysKeepNegativeCoordinates() throws SQLException {
+        int[] coordinates = {0, 1, -1, 12_345, -12_345, EDGE, -EDGE - 1};
+        for (int x : coordinates) {
+            for (int z : coordinates) {
+                long key = DatabaseManager.chunkKey(5, x, z);
+                assertEquals(x, DatabaseManager.chunkKeyX(key));
+                assertEquals(z, DatabaseManager.chunkKeyZ(key));
+                assertEquals(5, key >>> 44);
+            }
+        }
+
+        // Chunks of different worlds never share a key
+        assertNotEquals(DatabaseManager.chunkKey(1, -1, -1), DatabaseManager.chunkKey(2, -1, -1));
+        assertThrows(SQLException.class, () -> DatabaseManager.chunkKey(1, EDGE + 1, 0));
+        assertThrows(SQLException.class, () -> DatabaseManager.chunkKey(1, 0, -EDGE - 2));
+    }
+
+    /**
+     * Claims 1 to 3 plus claim 7, deleted again so the AUTOINCREMENT sequence is above every
+     * remaining ID. Claim 3 also claims a chunk of the older claim 1.
+     */
+    private static void writeOriginalClaims(Statement stmt) throws SQLException {
+        TestDatabase.createOriginalSchema(stmt);
+
+        // Timestamps as the driver writes them, in epoch milliseconds
+        stmt.execute("INSERT INTO claims (id, owner_uuid, owner_name, world, name, created_at, last_accessed) VALUES "
+                + "(1, '" + OWNER + "', 'Alice', 'world', 'Home', " + CREATED_AT + ", " + CREATED_AT + "), "
+                + "(2, '" + OTHER_OWNER + "', 'Dave', 'world_nether', NULL, " + (CREATED_AT + 1) + ", " + (CREATED_AT + 1) + "), "
+                + "(3, '" + OTHER_OWNER + "', 'Dave', 'world', NULL, " + (CREATED_AT + 2) + ", " + (CREATED_AT + 2) + "), "
+                + "(7, '" + OWNER + "', 'Alice', 'world', 'Gone', " + (CREATED_AT + 3) + ", " + (CREATED_AT + 3) + ")");
+
+        stmt.execute("INSERT INTO claim_chunks (claim_id, chunk_x, chunk_z) VALUES "
+                + "(1, 0, 0), (1, -1, -1), (1, " + (-EDGE - 1) + ", " + EDGE + "), "
+                + "(2, 0, 0), "
+                + "(3, 0, 0), (3, 3, -3), "
+                + "(7, 9, 9)");
+
+        stmt.execute("INSERT INTO claim_flags (claim_id, flag_name, flag_value) VALUES "
+                + "(1, 'PVP', 1), (1, 'WATER_FLOW', 0), (1, 'BLOCK_BREAK', 0), (1, 'REMOVED_FLAG', 1), "
+                + "(7, 'PVP', 1)");
+
+        stmt.execute("INSERT INTO claim_members (claim_id, player_uuid, player_name, trust_level, added_at) VALUES "
+                + "(1, '" + TRUSTED + "', 'Bob', 'trusted', " + CREATED_AT + "), "
+                + "(1, '" + ADMIN + "', 'Carol', 'admin', " + CREATED_AT + "), "
+                + "(7, '" + TRUSTED + "', 'Bob', 'trusted', " + CREATED_AT + ")");
+
+        stmt.execute("DELETE FROM claims WHERE id = 7");
+    }
+
+    private static void assertMember(ClaimMember member, String name, String trustLevel) {
+        assertNotNull(member);
+        assertEquals(name, member.getPlayerName());
+        assertEquals(trustLevel, member.getTrustLevel());
+    }
+
+    private static long queryLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+}
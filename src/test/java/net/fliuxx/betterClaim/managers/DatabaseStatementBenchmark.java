@@ -0,0 +1,127 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.utils.CachedConnection;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of loading one claim (its row, chunks and members) with a connection opened and
+ * configured per operation as before, with a kept connection that prepares every statement,
+ * with a {@link CachedConnection}, and through {@link DatabaseManager#loadClaim(int)}.
+ */
+@Tag(Benchmarks.TAG)
+class DatabaseStatementBenchmark {
+
+    private static final int CLAIMS = 10_000;
+    private static final int LOADS = 5_000;
+    private static final int CONNECTION_PER_LOAD_LOADS = 500;
+
+    private static final String CLAIM_SQL = "SELECT * FROM claims WHERE id = ?";
+    private static final String CHUNKS_SQL = "SELECT claim_id, chunk_key FROM claim_chunks WHERE claim_id = ?";
+    private static final String MEMBERS_SQL = "SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members WHERE claim_id = ?";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void compareStatementReuse() throws SQLException {
+        DatabaseManager database = TestDatabase.open(folder, false);
+        TestDatabase.save(database, TestDatabase.createClaims(CLAIMS, 9, 3, 11));
+
+        Random random = new Random(11);
+        int[] ids = new int[LOADS];
+        for (int i = 0; i < LOADS; i++) {
+            ids[i] = 1 + random.nextInt(CLAIMS);
+        }
+        String url = "jdbc:sqlite:" + folder.resolve(TestDatabase.FILENAME).toAbsolutePath();
+
+        Benchmarks.measure("connection per load", CONNECTION_PER_LOAD_LOADS, TestDatabase.sql(() -> {
+            long rows = 0;
+            for (int i = 0; i < CONNECTION_PER_LOAD_LOADS; i++) {
+                try (Connection conn = DriverManager.getConnection(url)) {
+                    configure(conn);
+                    rows += loadPreparingEach(conn, ids[i]);
+                }
+            }
+            return rows;
+        }));
+
+        try (Connection conn = DriverManager.getConnection(url); CachedConnection cached = new CachedConnection(DriverManager.getConnection(url))) {
+            configure(conn);
+            configure(cached.getConnection());
+
+            Benchmarks.measure("kept connection, statement per query", LOADS, TestDatabase.sql(() -> {
+                long rows = 0;
+                for (int id : ids) {
+                    rows += loadPreparingEach(conn, id);
+                }
+                return rows;
+            }));
+            Benchmarks.measure("CachedConnection", LOADS, TestDatabase.sql(() -> {
+                long rows = 0;
+                for (int id : ids) {
+                    rows += count(cached.prepare(CLAIM_SQL), id) + count(cached.prepare(CHUNKS_SQL), id)
+                            + count(cached.prepare(MEMBERS_SQL), id);
+                }
+                assertTrue(rows > 0);
+                return rows;
+            }));
+        }
+
+        Benchmarks.measure("DatabaseManager.loadClaim", LOADS, () -> {
+            long chunks = 0;
+            for (int id : ids) {
+                chunks += database.loadClaim(id).getChunkCount();
+            }
+            return chunks;
+        });
+        assertNotNull(database.loadClaim(ids[0]));
+        database.closeConnection();
+    }
+
+    /**
+     * The per-connection setup DatabaseManager runs once per connection
+     */
+    private static void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA cache_size=10000");
+            stmt.execute("PRAGMA temp_store=memory");
+            stmt.execute("PRAGMA mmap_size=268435456");
+            stmt.execute("PRAGMA busy_timeout=5000");
+            stmt.execute("PRAGMA foreign_keys=ON");
+            stmt.execute("PRAGMA query_only=ON");
+        }
+    }
+
+    private static long loadPreparingEach(Connection conn, int id) throws SQLException {
+        long rows = 0;
+        for (String sql : new String[] {CLAIM_SQL, CHUNKS_SQL, MEMBERS_SQL}) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                rows += count(stmt, id);
+            }
+        }
+        return rows;
+    }
+
+    private static long count(PreparedStatement stmt, int id) throws SQLException {
+        stmt.setInt(1, id);
+        long rows = 0;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,153 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimFlag;
+import net.fliuxx.betterClaim.models.ClaimMember;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * File size and full-load time of the same claims in the original schema and in schema v2,
+ * the v2 database being produced by the startup migration.
+ */
+@Tag(Benchmarks.TAG)
+class SchemaSizeBenchmark {
+
+    private static final int CLAIMS = 50_000;
+    private static final int CHUNKS_PER_CLAIM = 10;
+    private static final int MEMBERS_PER_CLAIM = 3;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void compareWithOriginalSchema() throws SQLException {
+        List<Claim> claims = TestDatabase.createClaims(CLAIMS, CHUNKS_PER_CLAIM, MEMBERS_PER_CLAIM, 20);
+        File file = folder.resolve(TestDatabase.FILENAME).toFile();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            writeOriginalSchema(conn, claims);
+        }
+        long originalSize = file.length();
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            Benchmarks.measure("original schema, table scans, per claim", CLAIMS, TestDatabase.sql(() ->
+                    scan(conn, "SELECT * FROM claims ORDER BY created_at DESC")
+                            + scan(conn, "SELECT claim_id, chunk_x, chunk_z FROM claim_chunks ORDER BY claim_id")
+                            + scan(conn, "SELECT claim_id, flag_name, flag_value FROM claim_flags")
+                            + scan(conn, "SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members ORDER BY claim_id")));
+        }
+
+        // Migrates to v2 on open; closing checkpoints the WAL into the file
+        TestDatabase.open(folder, false).closeConnection();
+        long migratedSize = file.length();
+
+        Benchmarks.report("original schema size", Benchmarks.megabytes(originalSize));
+        Benchmarks.report("v2 schema size", Benchmarks.megabytes(migratedSize));
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            Benchmarks.measure("v2 schema, table scans, per claim", CLAIMS, TestDatabase.sql(() ->
+                    scan(conn, "SELECT * FROM claims ORDER BY created_at DESC")
+                            + scan(conn, "SELECT claim_id, chunk_key FROM claim_chunks ORDER BY claim_id")
+                            + scan(conn, "SELECT claim_id, player_uuid, player_name, trust_level, added_at FROM claim_members ORDER BY claim_id")));
+        }
+
+        DatabaseManager database = TestDatabase.open(folder, false);
+        List<Claim> loaded = database.loadAllClaims().join();
+        assertEquals(CLAIMS, loaded.size());
+        assertEquals(CLAIMS * CHUNKS_PER_CLAIM, loaded.stream().mapToInt(Claim::getChunkCount).sum());
+        Benchmarks.measure("v2 schema, DatabaseManager.loadAllClaims, per claim", CLAIMS,
+                () -> database.loadAllClaims().join().size());
+        database.closeConnection();
+    }
+
+    /**
+     * Write claims the way the plugin stored them before schema v2, then compact the file
+     */
+    private static void writeOriginalSchema(Connection conn, List<Claim> claims) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            TestDatabase.createOriginalSchema(stmt);
+        }
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement claimStmt = conn.prepareStatement(
+                     "INSERT INTO claims (id, owner_uuid, owner_name, world, name, created_at) VALUES (?, ?, ?, ?, ?, ?)");
+             PreparedStatement chunkStmt = conn.prepareStatement(
+                     "INSERT INTO claim_chunks (claim_id, chunk_x, chunk_z) VALUES (?, ?, ?)");
+             PreparedStatement flagStmt = conn.prepareStatement(
+                     "INSERT INTO claim_flags (claim_id, flag_name, flag_value) VALUES (?, ?, ?)");
+             PreparedStatement memberStmt = conn.prepareStatement(
+                     "INSERT INTO claim_members (claim_id, player_uuid, player_name, trust_level, added_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (Claim claim : claims) {
+                claimStmt.setInt(1, claim.getId());
+                claimStmt.setString(2, claim.getOwnerUUID().toString());
+                claimStmt.setString(3, claim.getOwnerName());
+                claimStmt.setString(4, claim.getWorld());
+                claimStmt.setString(5, claim.getName());
+                claimStmt.setTimestamp(6, claim.getCreatedAt());
+                claimStmt.executeUpdate();
+
+                for (ChunkLocation chunk : claim.getChunks()) {
+                    chunkStmt.setInt(1, claim.getId());
+                    chunkStmt.setInt(2, chunk.getX());
+                    chunkStmt.setInt(3, chunk.getZ());
+                    chunkStmt.addBatch();
+                }
+                chunkStmt.executeBatch();
+
+                for (ClaimFlag flag : ClaimFlag.values()) {
+                    flagStmt.setInt(1, claim.getId());
+                    flagStmt.setString(2, flag.name());
+                    flagStmt.setBoolean(3, claim.getFlag(flag));
+                    flagStmt.addBatch();
+                }
+                flagStmt.executeBatch();
+
+                for (ClaimMember member : claim.getMembers()) {
+                    memberStmt.setInt(1, claim.getId());
+                    memberStmt.setString(2, member.getPlayerUUID().toString());
+                    memberStmt.setString(3, member.getPlayerName());
+                    memberStmt.setString(4, member.getTrustLevel());
+                    memberStmt.setTimestamp(5, member.getAddedAt());
+                    memberStmt.addBatch();
+                }
+                memberStmt.executeBatch();
+            }
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("VACUUM"); // The migration vacuums the v2 file too
+        }
+    }
+
+    /**
+     * Read every column of every row, the work a load does before building claims
+     */
+    private static long scan(Connection conn, String sql) throws SQLException {
+        long values = 0;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    if (rs.getObject(i) != null) {
+                        values++;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,179 @@
+package net.fliuxx.betterClaim.managers;
+
+import net.fliuxx.betterClaim.BetterClaim;
+import net.fliuxx.betterClaim.models.ChunkLocation;
+import net.fliuxx.betterClaim.models.Claim;
+import net.fliuxx.betterClaim.models.ClaimMember;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A DatabaseManager over a SQLite file in a test folder, with the plugin and config mocked,
+ * and generated claims to fill it with.
+ */
+final class TestDatabase {
+
+    static final String FILENAME = "claims.db";
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Open a database in a folder, creating or migrating its schema
+     * @param folder The plugin data folder
+     * @param snapshotEnabled Value of performance.snapshot
+     * @return The initialized manager; close it with {@link DatabaseManager#closeConnection()}
+     */
+    static DatabaseManager open(Path folder, boolean snapshotEnabled) {
+        ConfigManager config = mock(ConfigManager.class);
+        when(config.getDatabaseFilename()).thenReturn(FILENAME);
+        when(config.getDatabaseReadPoolSize()).thenReturn(2);
+        when(config.getDatabaseWriteQueueSize()).thenReturn(1024);
+        when(config.getDatabaseShutdownTimeout()).thenReturn(30);
+        when(config.isAsyncSaves()).thenReturn(true);
+        when(config.isSnapshotEnabled()).thenReturn(snapshotEnabled);
+
+        BetterClaim plugin = mock(BetterClaim.class);
+        when(plugin.getConfigManager()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(folder.toFile());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("BetterClaimTest"));
+
+        DatabaseManager database = new DatabaseManager(plugin);
+        database.initializeDatabase();
+        return database;
+    }
+
+    /**
+     * Create the tables of the original schema, before v2: text UUIDs, world names, a row per
+     * flag, and surrogate-keyed chunk rows. Opening the file with {@link #open} migrates it.
+     * @param stmt A statement on the empty database
+     */
+    static void createOriginalSchema(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE claims (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                owner_uuid TEXT NOT NULL,
+                owner_name TEXT NOT NULL,
+                world TEXT NOT NULL,
+                name TEXT,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                last_accessed TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE claim_chunks (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                claim_id INTEGER NOT NULL,
+                chunk_x INTEGER NOT NULL,
+                chunk_z INTEGER NOT NULL,
+                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
+                UNIQUE(claim_id, chunk_x, chunk_z)
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE claim_flags (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                claim_id INTEGER NOT NULL,
+                flag_name TEXT NOT NULL,
+                flag_value BOOLEAN NOT NULL,
+                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
+                UNIQUE(claim_id, flag_name)
+            )
+        """);
+        stmt.execute("""
+            CREATE TABLE claim_members (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                claim_id INTEGER NOT NULL,
+                player_uuid TEXT NOT NULL,
+                player_name TEXT NOT NULL,
+                trust_level TEXT NOT NULL,
+                added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                FOREIGN KEY (claim_id) REFERENCES claims(id) ON DELETE CASCADE,
+                UNIQUE(claim_id, player_uuid)
+            )
+        """);
+    }
+
+    /**
+     * Generate claims with IDs 1..count, each a row of chunks with a few members,
+     * spread over three worlds
+     * @param count Number of claims
+     * @param chunksPerClaim Chunks per claim
+     * @param membersPerClaim Members per claim
+     * @param seed Random seed
+     * @return The claims, not saved yet
+     */
+    static List<Claim> createClaims(int count, int chunksPerClaim, int membersPerClaim, long seed) {
+        Random random = new Random(seed);
+        String[] worlds = {"world", "world_nether", "world_the_end"};
+        String[] trustLevels = {"trusted", "moderator", "admin"};
+
+        List<Claim> claims = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String world = worlds[i % worlds.length];
+            Claim claim = new Claim(new UUID(random.nextLong(), random.nextLong()), "owner" + random.nextInt(10_000), world);
+            claim.setId(i + 1);
+            claim.setName(i % 4 == 0 ? "Base " + i : null);
+
+            // Claims on a grid, one row each, so no two claims share a chunk
+            int rowX = (i / worlds.length % 1000 - 500) * chunksPerClaim;
+            int rowZ = i / worlds.length / 1000 - 500;
+            List<ChunkLocation> chunks = new ArrayList<>(chunksPerClaim);
+            for (int c = 0; c < chunksPerClaim; c++) {
+                chunks.add(new ChunkLocation(world, rowX + c, rowZ));
+            }
+            claim.addChunks(chunks);
+
+            List<ClaimMember> members = new ArrayList<>(membersPerClaim);
+            for (int m = 0; m < membersPerClaim; m++) {
+                members.add(new ClaimMember(new UUID(random.nextLong(), random.nextLong()), "member" + m,
+                        trustLevels[random.nextInt(trustLevels.length)]));
+            }
+            claim.addMembers(members);
+            claims.add(claim);
+        }
+        return claims;
+    }
+
+    /**
+     * Write claims in one write-behind flush, the way a server saves many changed claims
+     * @param database The database
+     * @param claims Claims with their IDs set
+     */
+    static void save(DatabaseManager database, List<Claim> claims) {
+        for (Claim claim : claims) {
+            database.queueSave(claim);
+        }
+        int saved = database.flushPendingSaves();
+        if (saved != claims.size()) {
+            throw new IllegalStateException("Saved " + saved + " of " + claims.size() + " claims");
+        }
+    }
+
+    interface SqlWork {
+        long run() throws SQLException;
+    }
+
+    /**
+     * Adapt JDBC work for {@link net.fliuxx.betterClaim.Benchmarks#measure}
+     * @param work The work
+     * @return The work, with SQL errors rethrown unchecked
+     */
+    static LongSupplier sql(SqlWork work) {
+        return () -> {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
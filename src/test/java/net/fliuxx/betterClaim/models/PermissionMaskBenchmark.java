@@ -0,0 +1,98 @@
+package net.fliuxx.betterClaim.models;
+
+import net.fliuxx.betterClaim.Benchmarks;
+import net.fliuxx.betterClaim.managers.ConfigManager;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Trust permission checks through the compiled permission masks against the lookup they
+ * replaced: a stream scan over the members, a trust level list copied out of the config and
+ * a flag name built per check.
+ */
+@Tag(Benchmarks.TAG)
+class PermissionMaskBenchmark {
+
+    private static final String[] LEVELS = {"trusted", "moderator", "admin"};
+    private static final int CHECKS = 1_000_000;
+
+    @Test
+    void compareWithMemberScan() throws IOException {
+        // The trust levels shipped in the default config
+        ConfigurationSection section;
+        try (Reader reader = new InputStreamReader(
+                Objects.requireNonNull(getClass().getResourceAsStream("/config.yml")), StandardCharsets.UTF_8)) {
+            section = YamlConfiguration.loadConfiguration(reader).getConfigurationSection("trust-levels");
+        }
+        Map<String, List<String>> trustLevels = new HashMap<>();
+        for (String level : section.getKeys(false)) {
+            trustLevels.put(level, section.getStringList(level));
+        }
+        Map<String, Long> trustLevelMasks = ConfigManager.compileTrustLevels(section, Logger.getLogger("BetterClaimTest"));
+
+        Random random = new Random(5);
+        ClaimFlag[] flags = ClaimFlag.values();
+        for (int memberCount : new int[] {1, 10, 200}) {
+            Claim claim = new Claim(UUID.randomUUID(), "owner", "world");
+            List<UUID> players = new ArrayList<>();
+            for (int i = 0; i < memberCount; i++) {
+                UUID player = UUID.randomUUID();
+                claim.addMember(new ClaimMember(player, "member" + i, LEVELS[i % LEVELS.length]));
+                players.add(player);
+            }
+
+            // Members and strangers alike
+            UUID[] checkedPlayers = new UUID[CHECKS];
+            ClaimFlag[] checkedFlags = new ClaimFlag[CHECKS];
+            for (int i = 0; i < CHECKS; i++) {
+                checkedPlayers[i] = random.nextInt(4) == 0 ? UUID.randomUUID() : players.get(random.nextInt(memberCount));
+                checkedFlags[i] = flags[random.nextInt(flags.length)];
+            }
+
+            Check memberScan = (player, flag) -> {
+                ClaimMember member = claim.getMembers().stream()
+                        .filter(m -> m.getPlayerUUID().equals(player))
+                        .findFirst()
+                        .orElse(null);
+                if (member == null) {
+                    return false;
+                }
+                List<String> permissions = new ArrayList<>(trustLevels.getOrDefault(member.getTrustLevel(), List.of()));
+                return permissions.contains(flag.name().toLowerCase().replace('_', '-'));
+            };
+            Check permissionMask = (player, flag) -> (claim.getPermissionMask(player, trustLevelMasks) & flag.getMask()) != 0;
+            assertEquals(countGranted(checkedPlayers, checkedFlags, memberScan),
+                    countGranted(checkedPlayers, checkedFlags, permissionMask), "Both checks must grant the same permissions");
+
+            Benchmarks.measure("member scan, " + memberCount + " members", CHECKS,
+                    () -> countGranted(checkedPlayers, checkedFlags, memberScan));
+            Benchmarks.measure("permission mask, " + memberCount + " members", CHECKS,
+                    () -> countGranted(checkedPlayers, checkedFlags, permissionMask));
+        }
+    }
+
+    private interface Check {
+        boolean isGranted(UUID player, ClaimFlag flag);
+    }
+
+    private static long countGranted(UUID[] players, ClaimFlag[] flags, Check check) {
+        long granted = 0;
+        for (int i = 0; i < players.length; i++) {
+            if (check.isGranted(players[i], flags[i])) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+}